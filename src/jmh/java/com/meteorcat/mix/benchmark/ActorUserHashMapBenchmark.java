@@ -0,0 +1,87 @@
+package com.meteorcat.mix.benchmark;
+
+import com.meteorcat.mix.core.ActorMessageQueue;
+import com.meteorcat.mix.core.ActorUserHashMap;
+import com.meteorcat.mix.core.SessionContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在线玩家索引基准测试, 按不同在线规模测量查询开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActorUserHashMapBenchmark {
+
+    /**
+     * 在线会话数量
+     */
+    @Param({"1000", "10000", "100000"})
+    int size;
+
+    /**
+     * 在线玩家索引
+     */
+    ActorUserHashMap users;
+
+    /**
+     * 在线会话上下文, 下标为 UID
+     */
+    SessionContext[] contexts;
+
+
+    @Setup
+    public void setup() {
+        users = new ActorUserHashMap();
+        contexts = new SessionContext[size];
+        for (int i = 0; i < size; i++) {
+            StubWebSocketSession session = new StubWebSocketSession(Integer.toString(i), null);
+            contexts[i] = new SessionContext(session, new ActorMessageQueue(session, null), 0);
+            users.put(contexts[i], i);
+        }
+    }
+
+
+    @Benchmark
+    public SessionContext findSessionByUid() {
+        return users.get(ThreadLocalRandom.current().nextInt(size));
+    }
+
+
+    @Benchmark
+    public Long findUidBySession() {
+        return contexts[ThreadLocalRandom.current().nextInt(size)].getUid();
+    }
+
+
+    @Benchmark
+    @Threads(4)
+    public SessionContext findSessionByUidConcurrent() {
+        return users.get(ThreadLocalRandom.current().nextInt(size));
+    }
+
+
+    @Benchmark
+    @Threads(4)
+    public SessionContext rebindConcurrent() {
+        int uid = ThreadLocalRandom.current().nextInt(size);
+        return users.put(contexts[uid], uid);
+    }
+}
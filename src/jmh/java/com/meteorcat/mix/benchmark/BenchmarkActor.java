@@ -0,0 +1,65 @@
+package com.meteorcat.mix.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.meteorcat.mix.WebsocketApplication;
+import com.meteorcat.mix.constant.ActorStatus;
+import com.meteorcat.mix.constant.request.AuthLoginRequest;
+import com.meteorcat.spring.boot.starter.ActorConfigurer;
+import com.meteorcat.spring.boot.starter.ActorMapping;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * 基准测试 Actor, 只记录收到的参数, 用于测量解码和派发本身的开销
+ */
+public class BenchmarkActor extends ActorConfigurer {
+
+    /**
+     * 类型化参数协议, 和登录请求参数一致
+     */
+    public static final int TYPED = 1000;
+
+    /**
+     * JSON 树参数协议
+     */
+    public static final int TREE = 1001;
+
+    /**
+     * 最后收到的参数, 防止处理被优化掉
+     */
+    public volatile Object last;
+
+
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+
+    /**
+     * 类型化参数处理
+     *
+     * @param app     应用
+     * @param session 会话
+     * @param data    数据
+     */
+    @ActorMapping(value = TYPED, state = ActorStatus.None)
+    public void typed(WebsocketApplication app, WebSocketSession session, AuthLoginRequest data) {
+        last = data;
+    }
+
+
+    /**
+     * JSON 树参数处理
+     *
+     * @param app     应用
+     * @param session 会话
+     * @param data    数据
+     */
+    @ActorMapping(value = TREE, state = ActorStatus.None)
+    public void tree(WebsocketApplication app, WebSocketSession session, JsonNode data) {
+        last = data;
+    }
+}
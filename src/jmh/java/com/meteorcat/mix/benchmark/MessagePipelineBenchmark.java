@@ -0,0 +1,202 @@
+package com.meteorcat.mix.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.meteorcat.mix.WebsocketApplication;
+import com.meteorcat.mix.constant.Protocols;
+import com.meteorcat.mix.core.ActorBlockingExecutor;
+import com.meteorcat.mix.core.ActorDispatchTable;
+import com.meteorcat.mix.core.ActorMailbox;
+import com.meteorcat.mix.core.ActorMessageWriter;
+import com.meteorcat.mix.core.ActorTimingWheel;
+import com.meteorcat.mix.core.codec.BinaryMessageCodec;
+import com.meteorcat.mix.core.codec.JsonMessageCodec;
+import com.meteorcat.mix.core.codec.MessageDeflater;
+import com.meteorcat.mix.core.codec.MessageCodec;
+import com.meteorcat.mix.core.trace.FrameTracer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息管线基准测试: 请求解码派发, 响应编码推送
+ * 信箱采用直接执行, 测量结果不包含线程切换
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessagePipelineBenchmark {
+
+    /**
+     * 会话子协议
+     */
+    @Param({JsonMessageCodec.PROTOCOL, BinaryMessageCodec.PROTOCOL})
+    String protocol;
+
+    /**
+     * 应用
+     */
+    WebsocketApplication app;
+
+    /**
+     * 测试会话
+     */
+    StubWebSocketSession session;
+
+    /**
+     * 测试 Actor
+     */
+    BenchmarkActor actor;
+
+    /**
+     * 消息推送器
+     */
+    ActorMessageWriter writer;
+
+    /**
+     * 玩家消息信箱
+     */
+    ActorMailbox mailbox;
+
+    /**
+     * 阻塞任务执行器
+     */
+    ActorBlockingExecutor blocking;
+
+    /**
+     * 会话编解码器
+     */
+    MessageCodec codec;
+
+    /**
+     * 类型化参数请求
+     */
+    WebSocketMessage<?> typed;
+
+    /**
+     * JSON 树参数请求
+     */
+    WebSocketMessage<?> tree;
+
+    /**
+     * 响应参数
+     */
+    Map<String, Object> args;
+
+
+    @Setup
+    public void setup() throws Exception {
+        actor = new BenchmarkActor();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        writer = new ActorMessageWriter(1, 1024, 1 << 20, ActorMessageWriter.Overflow.DROP_OLDEST, 10000, 0, 0L, registry);
+        mailbox = new ActorMailbox(0);
+        blocking = new ActorBlockingExecutor("inline", 0, mailbox);
+        ActorDispatchTable routes = ActorDispatchTable.build(null, List.of(actor));
+        app = new WebsocketApplication(
+                null,
+                writer,
+                mailbox,
+                blocking,
+                new ActorTimingWheel(100L, 512),
+                routes,
+                registry,
+                new FrameTracer(0, routes.size(), 1),
+                new MessageDeflater(1024, 6, 1, registry),
+                600000L
+        );
+
+        session = new StubWebSocketSession("benchmark", protocol);
+        app.afterConnectionEstablished(session);
+
+        codec = BinaryMessageCodec.PROTOCOL.equals(protocol)
+                ? new BinaryMessageCodec(new CBORMapper())
+                : new JsonMessageCodec(new ObjectMapper());
+        Map<String, Object> login = Map.of("uid", 10001L, "secret", "2f0c6e8a3b9d4e1f8a7b6c5d4e3f2a1b");
+        typed = codec.encode(BenchmarkActor.TYPED, login);
+        tree = codec.encode(BenchmarkActor.TREE, login);
+        args = Map.of("timestamp", System.currentTimeMillis(), "scene", 100, "create", false);
+    }
+
+
+    @TearDown
+    public void tearDown() throws Exception {
+        app.afterConnectionClosed(session, CloseStatus.NORMAL);
+        writer.shutdown();
+        blocking.shutdown();
+        mailbox.shutdown();
+    }
+
+
+    /**
+     * 二进制请求的缓冲区会被解码消费, 每次重新包装, 和容器每帧构建新消息一致
+     *
+     * @param message 请求
+     * @return WebSocketMessage
+     */
+    static WebSocketMessage<?> fresh(WebSocketMessage<?> message) {
+        if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload().duplicate();
+            return new BinaryMessage(payload);
+        }
+        return message;
+    }
+
+
+    @Benchmark
+    public Object dispatchTyped() throws Exception {
+        app.handleMessage(session, fresh(typed));
+        return actor.last;
+    }
+
+
+    @Benchmark
+    public Object dispatchTree() throws Exception {
+        app.handleMessage(session, fresh(tree));
+        return actor.last;
+    }
+
+
+    @Benchmark
+    public WebSocketMessage<?> encodeHeartbeat() throws Exception {
+        return codec.encode(Protocols.SYS_HEARTBEAT);
+    }
+
+
+    @Benchmark
+    public WebSocketMessage<?> encodeArgs() throws Exception {
+        return codec.encode(Protocols.AUTH_LOGIN_SUCCESS, args);
+    }
+
+
+    @Benchmark
+    public void pushHeartbeat() {
+        app.push(session, Protocols.SYS_HEARTBEAT);
+    }
+
+
+    @Benchmark
+    public void pushArgs() {
+        app.push(session, Protocols.AUTH_LOGIN_SUCCESS, args);
+    }
+}
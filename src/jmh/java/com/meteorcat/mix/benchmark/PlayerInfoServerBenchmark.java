@@ -0,0 +1,203 @@
+package com.meteorcat.mix.benchmark;
+
+import com.meteorcat.mix.model.PlayerInfoModel;
+import com.meteorcat.mix.model.repository.PlayerInfoRepository;
+import com.meteorcat.mix.server.PlayerInfoColumns;
+import com.meteorcat.mix.server.PlayerInfoServer;
+import com.meteorcat.mix.server.PlayerInfoSnapshot;
+import com.meteorcat.mix.server.PlayerJournal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.FileSystemUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 玩家数据落地基准测试, 采用内存 H2 数据库脱离 MariaDB 运行
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerInfoServerBenchmark {
+
+    /**
+     * 内存玩家数量
+     */
+    static final int PLAYERS = 10000;
+
+    /**
+     * 内存数据库
+     */
+    SingleConnectionDataSource dataSource;
+
+    /**
+     * 临时日志目录
+     */
+    Path directory;
+
+    /**
+     * 玩家数据变动日志
+     */
+    PlayerJournal journal;
+
+    /**
+     * 玩家信息服务
+     */
+    PlayerInfoServer server;
+
+    /**
+     * 内存玩家, 下标为 UID - 1
+     */
+    PlayerInfoModel[] models;
+
+
+    @Setup
+    public void setup() throws Exception {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS tbl_player_info");
+        jdbcTemplate.execute("""
+                CREATE TABLE tbl_player_info (
+                    uid BIGINT PRIMARY KEY,
+                    nickname VARCHAR(64) NOT NULL,
+                    gold BIGINT NOT NULL,
+                    create_time BIGINT NOT NULL,
+                    update_time BIGINT NOT NULL,
+                    last_scene INT NOT NULL
+                )""");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS tbl_player_journal");
+        jdbcTemplate.execute("""
+                CREATE TABLE tbl_player_journal (
+                    id INT PRIMARY KEY,
+                    segment BIGINT NOT NULL,
+                    epoch VARCHAR(36) NOT NULL,
+                    revision BIGINT NOT NULL
+                )""");
+
+        // 仓库只需要按主键加载, 采用代理实现避免启动 JPA
+        Map<Long, PlayerInfoModel> rows = new ConcurrentHashMap<>();
+        models = new PlayerInfoModel[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            long uid = i + 1;
+            PlayerInfoModel model = new PlayerInfoModel();
+            model.setUid(uid);
+            model.setNickname("player#" + uid);
+            model.setGold(1000);
+            model.setCreateTime(System.currentTimeMillis());
+            model.setUpdateTime(0L);
+            models[i] = model;
+            rows.put(uid, model);
+            jdbcTemplate.update("INSERT INTO tbl_player_info VALUES (?, ?, ?, ?, ?, ?)",
+                    uid, model.getNickname(), model.getGold(), model.getCreateTime(), model.getUpdateTime(), model.getLastScene());
+        }
+        PlayerInfoRepository repository = (PlayerInfoRepository) Proxy.newProxyInstance(
+                PlayerInfoRepository.class.getClassLoader(),
+                new Class<?>[]{PlayerInfoRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> Optional.ofNullable(rows.get((Long) args[0]));
+                    case "save" -> args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "PlayerInfoRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                }
+        );
+
+        // 日志按默认间隔刷盘, 和线上配置一致
+        MeterRegistry registry = new SimpleMeterRegistry();
+        directory = Files.createTempDirectory("journal");
+        journal = new PlayerJournal(directory.toString(), 64 * 1024 * 1024, 1000L, registry);
+        PlayerInfoSnapshot snapshot = new PlayerInfoSnapshot(directory.resolve("player.snapshot").toString());
+        server = new PlayerInfoServer(repository, jdbcTemplate, new DataSourceTransactionManager(dataSource), journal, snapshot, registry);
+        for (PlayerInfoModel model : models) {
+            server.findByUid(model.getUid());
+        }
+    }
+
+
+    @TearDown
+    public void tearDown() throws Exception {
+        journal.close();
+        dataSource.destroy();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+
+    /**
+     * 落地前的脏数据, 只用于落地测试
+     */
+    @State(Scope.Thread)
+    public static class Dirty {
+
+        /**
+         * 每次落地的脏数据玩家数量
+         */
+        @Param({"100", "1000"})
+        int dirty;
+
+
+        /**
+         * 每次落地前标识脏数据
+         *
+         * @param benchmark 基准测试状态
+         */
+        @Setup(Level.Invocation)
+        public void mark(PlayerInfoServerBenchmark benchmark) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < dirty; i++) {
+                PlayerInfoModel model = benchmark.models[random.nextInt(PLAYERS)];
+                model.setUpdateTime(System.currentTimeMillis());
+                benchmark.server.mark(model.getUid(), model, PlayerInfoColumns.UPDATE_TIME);
+                benchmark.server.changeGold(model, random.nextBoolean() ? 1 : -1);
+            }
+        }
+    }
+
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void mark() {
+        PlayerInfoModel model = models[ThreadLocalRandom.current().nextInt(PLAYERS)];
+        server.mark(model.getUid(), PlayerInfoColumns.UPDATE_TIME);
+    }
+
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean changeGold() {
+        PlayerInfoModel model = models[ThreadLocalRandom.current().nextInt(PLAYERS)];
+        return server.changeGold(model, ThreadLocalRandom.current().nextBoolean() ? 1 : -1);
+    }
+
+
+    @Benchmark
+    public void flush(Dirty dirty) {
+        server.flush();
+    }
+}
@@ -0,0 +1,158 @@
+package com.meteorcat.mix.benchmark;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基准测试会话, 不建立网络连接, 推送只统计数量
+ */
+public class StubWebSocketSession implements WebSocketSession {
+
+    /**
+     * 会话ID
+     */
+    final String id;
+
+    /**
+     * 子协议
+     */
+    final String protocol;
+
+    /**
+     * 会话属性
+     */
+    final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+    /**
+     * 已推送消息数量
+     */
+    final AtomicLong sent = new AtomicLong();
+
+    /**
+     * 会话是否打开
+     */
+    volatile boolean open = true;
+
+
+    /**
+     * 构造方法
+     *
+     * @param id       会话ID
+     * @param protocol 子协议, null 代表默认
+     */
+    public StubWebSocketSession(String id, String protocol) {
+        this.id = id;
+        this.protocol = protocol;
+    }
+
+
+    /**
+     * 已推送消息数量
+     *
+     * @return long
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+
+    @Override
+    @NonNull
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public URI getUri() {
+        return null;
+    }
+
+    @Override
+    @NonNull
+    public HttpHeaders getHandshakeHeaders() {
+        return HttpHeaders.EMPTY;
+    }
+
+    @Override
+    @NonNull
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    @NonNull
+    public List<WebSocketExtension> getExtensions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void sendMessage(@NonNull WebSocketMessage<?> message) {
+        sent.incrementAndGet();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    @Override
+    public void close(@NonNull CloseStatus status) {
+        open = false;
+    }
+}
@@ -0,0 +1,269 @@
+package com.meteorcat.mix.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.meteorcat.mix.constant.Protocols;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟玩家, 按真实流程 登录 -> 创建角色 -> 定时请求玩家信息, 同时接收心跳
+ * 同一玩家的请求在服务端顺序处理, 所以响应和请求按先后顺序对应
+ */
+final class LoadPlayer implements WebSocket.Listener {
+
+    /**
+     * 数据格式子协议
+     */
+    final static String PROTOCOL = "json";
+
+    /**
+     * JSON 解析
+     */
+    final static ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 玩家ID
+     */
+    final long uid;
+
+    /**
+     * 压测配置
+     */
+    final LoadTest.Options options;
+
+    /**
+     * 压测统计
+     */
+    final LoadStats stats;
+
+    /**
+     * 定时任务
+     */
+    final ScheduledExecutorService scheduler;
+
+    /**
+     * 未完成的玩家信息请求时间
+     */
+    final Queue<Long> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 分片接收的文本
+     */
+    final StringBuilder partial = new StringBuilder();
+
+    /**
+     * 连接
+     */
+    volatile WebSocket socket;
+
+    /**
+     * 发送链, JDK WebSocket 同一时刻只允许一个未完成的发送
+     */
+    CompletableFuture<WebSocket> sending;
+
+    /**
+     * 登录请求时间
+     */
+    volatile long loginAt;
+
+    /**
+     * 创建角色请求时间, 0 代表没有在创建
+     */
+    volatile long createAt;
+
+    /**
+     * 玩家信息定时请求
+     */
+    volatile ScheduledFuture<?> task;
+
+
+    LoadPlayer(long uid, LoadTest.Options options, LoadStats stats, ScheduledExecutorService scheduler) {
+        this.uid = uid;
+        this.options = options;
+        this.stats = stats;
+        this.scheduler = scheduler;
+    }
+
+
+    /**
+     * 建立连接并发送登录请求
+     *
+     * @param client HTTP 客户端
+     */
+    void connect(HttpClient client) {
+        client.newWebSocketBuilder()
+                .subprotocols(PROTOCOL)
+                .buildAsync(URI.create(options.url), this)
+                .whenComplete((webSocket, error) -> {
+                    if (error != null) {
+                        stats.errors.increment();
+                        return;
+                    }
+                    stats.connected.increment();
+                    socket = webSocket;
+                    synchronized (this) {
+                        sending = CompletableFuture.completedFuture(webSocket);
+                    }
+                    loginAt = System.nanoTime();
+                    send("{\"value\":" + Protocols.AUTH_LOGIN + ",\"args\":{\"uid\":" + uid + ",\"secret\":\"" + options.secret + "\"}}");
+                });
+    }
+
+
+    /**
+     * 断开连接
+     */
+    void stop() {
+        ScheduledFuture<?> current = task;
+        if (current != null) {
+            current.cancel(false);
+        }
+        WebSocket webSocket = socket;
+        if (webSocket != null && !webSocket.isOutputClosed()) {
+            synchronized (this) {
+                sending = sending.thenCompose(w -> w.sendClose(WebSocket.NORMAL_CLOSURE, ""));
+            }
+        }
+    }
+
+
+    /**
+     * 顺序发送文本
+     *
+     * @param text 文本
+     */
+    void send(String text) {
+        synchronized (this) {
+            sending = sending.thenCompose(w -> w.sendText(text, true));
+            sending.whenComplete((w, error) -> {
+                if (error != null) {
+                    stats.errors.increment();
+                }
+            });
+        }
+        stats.sent.increment();
+    }
+
+
+    /**
+     * 开始定时请求玩家信息, 加入随机延迟避免所有玩家同时请求
+     */
+    void play() {
+        if (options.infoInterval <= 0) {
+            return;
+        }
+        long delay = ThreadLocalRandom.current().nextLong(options.infoInterval);
+        task = scheduler.scheduleAtFixedRate(() -> {
+            pending.add(System.nanoTime());
+            send("{\"value\":" + Protocols.PLAYER_INFO + "}");
+        }, delay, options.infoInterval, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * 处理服务端响应, 服务端开启批量推送时候为数组
+     *
+     * @param text 响应
+     */
+    void handle(String text) {
+        JsonNode node;
+        try {
+            node = MAPPER.readTree(text);
+        } catch (Exception exception) {
+            stats.received.increment();
+            stats.errors.increment();
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (node.isArray()) {
+            for (JsonNode item : node) {
+                handle(item, now);
+            }
+        } else {
+            handle(node, now);
+        }
+    }
+
+
+    /**
+     * 处理单条服务端响应
+     *
+     * @param node 响应
+     * @param now  接收时间
+     */
+    void handle(JsonNode node, long now) {
+        stats.received.increment();
+        switch (node.path("value").asInt(-1)) {
+            case Protocols.SYS_HEARTBEAT -> stats.heartbeats.increment();
+            case Protocols.AUTH_LOGIN_SUCCESS -> {
+                stats.record(LoadStats.Kind.LOGIN, now - loginAt);
+                if (node.path("args").path("create").asBoolean(false)) {
+                    createAt = now;
+                    send("{\"value\":" + Protocols.PLAYER_CREATE + ",\"args\":{\"nickname\":\"load#" + uid + "\"}}");
+                } else {
+                    play();
+                }
+            }
+            case Protocols.PLAYER_INFO, Protocols.PLAYER_NOT_FOUND, Protocols.PLAYER_EXISTS -> {
+                if (createAt != 0L) {
+                    stats.record(LoadStats.Kind.CREATE, now - createAt);
+                    createAt = 0L;
+                    play();
+                    return;
+                }
+                Long sentAt = pending.poll();
+                if (sentAt != null) {
+                    stats.record(LoadStats.Kind.INFO, now - sentAt);
+                }
+            }
+            default -> stats.errors.increment();
+        }
+    }
+
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            String text = partial.toString();
+            partial.setLength(0);
+            handle(text);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        stats.closed.increment();
+        ScheduledFuture<?> current = task;
+        if (current != null) {
+            current.cancel(false);
+        }
+        return null;
+    }
+
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        stats.errors.increment();
+        stats.closed.increment();
+        ScheduledFuture<?> current = task;
+        if (current != null) {
+            current.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.meteorcat.mix.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测统计, 按请求类型记录响应耗时
+ */
+final class LoadStats {
+
+    /**
+     * 直方图精度
+     */
+    final static int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * 请求类型
+     */
+    enum Kind {
+        LOGIN, CREATE, INFO
+    }
+
+    /**
+     * 周期耗时记录, 下标为请求类型
+     */
+    final Recorder[] recorders = new Recorder[Kind.values().length];
+
+    /**
+     * 累计耗时, 下标为请求类型, 只在报告线程合并
+     */
+    final Histogram[] totals = new Histogram[Kind.values().length];
+
+    final LongAdder connected = new LongAdder();
+    final LongAdder closed = new LongAdder();
+    final LongAdder sent = new LongAdder();
+    final LongAdder received = new LongAdder();
+    final LongAdder heartbeats = new LongAdder();
+    final LongAdder errors = new LongAdder();
+
+    /**
+     * 上次报告时候的收发数量
+     */
+    long lastSent;
+    long lastReceived;
+    long lastReport = System.nanoTime();
+
+    /**
+     * 压测开始时间
+     */
+    final long started = System.nanoTime();
+
+
+    LoadStats() {
+        for (Kind kind : Kind.values()) {
+            recorders[kind.ordinal()] = new Recorder(SIGNIFICANT_DIGITS);
+            totals[kind.ordinal()] = new Histogram(SIGNIFICANT_DIGITS);
+        }
+    }
+
+
+    /**
+     * 记录响应耗时
+     *
+     * @param kind  请求类型
+     * @param nanos 耗时
+     */
+    void record(Kind kind, long nanos) {
+        recorders[kind.ordinal()].recordValue(Math.max(nanos, 0L));
+    }
+
+
+    /**
+     * 输出周期报告, 周期数据合并到累计数据
+     *
+     * @param out 输出
+     */
+    synchronized void report(PrintStream out) {
+        long now = System.nanoTime();
+        double seconds = Math.max((now - lastReport) / 1e9, 1e-9);
+        long sentNow = sent.sum();
+        long receivedNow = received.sum();
+        out.printf("[%5ds] online=%d closed=%d send=%.0f/s recv=%.0f/s heartbeat=%d errors=%d%n",
+                TimeUnit.NANOSECONDS.toSeconds(now - started),
+                connected.sum() - closed.sum(),
+                closed.sum(),
+                (sentNow - lastSent) / seconds,
+                (receivedNow - lastReceived) / seconds,
+                heartbeats.sum(),
+                errors.sum());
+        lastSent = sentNow;
+        lastReceived = receivedNow;
+        lastReport = now;
+
+        for (Kind kind : Kind.values()) {
+            Histogram interval = recorders[kind.ordinal()].getIntervalHistogram();
+            totals[kind.ordinal()].add(interval);
+            if (interval.getTotalCount() > 0) {
+                out.println("        " + line(kind, interval));
+            }
+        }
+    }
+
+
+    /**
+     * 输出最终报告
+     *
+     * @param out 输出
+     */
+    synchronized void summary(PrintStream out) {
+        report(out);
+        double seconds = Math.max((System.nanoTime() - started) / 1e9, 1e-9);
+        out.println("==================== summary ====================");
+        out.printf("duration=%.1fs connected=%d sent=%d (%.0f/s) received=%d (%.0f/s) heartbeat=%d errors=%d%n",
+                seconds,
+                connected.sum(),
+                sent.sum(), sent.sum() / seconds,
+                received.sum(), received.sum() / seconds,
+                heartbeats.sum(),
+                errors.sum());
+        for (Kind kind : Kind.values()) {
+            out.println(line(kind, totals[kind.ordinal()]));
+        }
+    }
+
+
+    /**
+     * 单个请求类型的分位数, 单位毫秒
+     *
+     * @param kind      请求类型
+     * @param histogram 耗时
+     * @return String
+     */
+    static String line(Kind kind, Histogram histogram) {
+        return String.format("%-6s count=%-8d p50=%.2fms p90=%.2fms p99=%.2fms p999=%.2fms max=%.2fms",
+                kind,
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50.0) / 1e6,
+                histogram.getValueAtPercentile(90.0) / 1e6,
+                histogram.getValueAtPercentile(99.0) / 1e6,
+                histogram.getValueAtPercentile(99.9) / 1e6,
+                histogram.getMaxValue() / 1e6);
+    }
+}
@@ -0,0 +1,160 @@
+package com.meteorcat.mix.loadtest;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket 压测工具, 模拟大量玩家按真实流程请求服务端
+ * 服务端采用 loadtest 配置启动, 使用内存数据库和固定登录授权码:
+ * <pre>
+ * mvn -P loadtest spring-boot:run -Dspring-boot.run.profiles=loadtest
+ * mvn -P loadtest compile exec:java -Dexec.args="--players=2000 --rate=200 --duration=120"
+ * </pre>
+ */
+public class LoadTest {
+
+    /**
+     * 压测配置, 参数格式为 --name=value
+     */
+    static final class Options {
+
+        /**
+         * 服务端地址
+         */
+        String url = "ws://127.0.0.1:8888/";
+
+        /**
+         * 登录授权码, 和服务端 auth.secret 一致
+         */
+        String secret = "loadtest";
+
+        /**
+         * 模拟玩家数量
+         */
+        int players = 1000;
+
+        /**
+         * 起始玩家ID
+         */
+        long uid = 1L;
+
+        /**
+         * 每秒登录玩家数量
+         */
+        int rate = 100;
+
+        /**
+         * 压测时长(秒), 从开始登录计算
+         */
+        int duration = 60;
+
+        /**
+         * 玩家信息请求周期(毫秒), 0 代表不请求
+         */
+        long infoInterval = 1000L;
+
+        /**
+         * 报告周期(秒)
+         */
+        int report = 5;
+
+        /**
+         * 定时任务线程数
+         */
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("unknown argument: " + arg);
+                }
+                int index = arg.indexOf('=');
+                values.put(arg.substring(2, index), arg.substring(index + 1));
+            }
+
+            Options options = new Options();
+            options.url = values.getOrDefault("url", options.url);
+            options.secret = values.getOrDefault("secret", options.secret);
+            options.players = Integer.parseInt(values.getOrDefault("players", Integer.toString(options.players)));
+            options.uid = Long.parseLong(values.getOrDefault("uid", Long.toString(options.uid)));
+            options.rate = Math.max(1, Integer.parseInt(values.getOrDefault("rate", Integer.toString(options.rate))));
+            options.duration = Integer.parseInt(values.getOrDefault("duration", Integer.toString(options.duration)));
+            options.infoInterval = Long.parseLong(values.getOrDefault("info-interval", Long.toString(options.infoInterval)));
+            options.report = Math.max(1, Integer.parseInt(values.getOrDefault("report", Integer.toString(options.report))));
+            options.threads = Integer.parseInt(values.getOrDefault("threads", Integer.toString(options.threads)));
+            return options;
+        }
+
+
+        @Override
+        public String toString() {
+            return "url=" + url +
+                    " players=" + players +
+                    " uid=" + uid +
+                    " rate=" + rate + "/s" +
+                    " duration=" + duration + "s" +
+                    " info-interval=" + infoInterval + "ms";
+        }
+    }
+
+
+    /**
+     * 入口方法
+     *
+     * @param args 参数
+     * @throws InterruptedException 中断
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Options options = Options.parse(args);
+        System.out.println("load test: " + options);
+
+        LoadStats stats = new LoadStats();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(options.threads);
+        HttpClient client = HttpClient.newHttpClient();
+        List<LoadPlayer> players = new ArrayList<>(options.players);
+
+        // 按登录速率逐个建立连接
+        AtomicInteger index = new AtomicInteger();
+        ScheduledFuture<?> login = scheduler.scheduleAtFixedRate(() -> {
+            int current = index.getAndIncrement();
+            if (current >= options.players) {
+                return;
+            }
+            LoadPlayer player = new LoadPlayer(options.uid + current, options, stats, scheduler);
+            synchronized (players) {
+                players.add(player);
+            }
+            player.connect(client);
+        }, 0L, TimeUnit.SECONDS.toNanos(1) / options.rate, TimeUnit.NANOSECONDS);
+
+        ScheduledFuture<?> report = scheduler.scheduleAtFixedRate(
+                () -> stats.report(System.out),
+                options.report,
+                options.report,
+                TimeUnit.SECONDS
+        );
+
+        // 到达压测时长之后断开所有连接, 等待关闭完成输出报告
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.duration));
+        login.cancel(false);
+        report.cancel(false);
+        synchronized (players) {
+            players.forEach(LoadPlayer::stop);
+        }
+        Thread.sleep(2000L);
+        stats.summary(System.out);
+
+        scheduler.shutdownNow();
+        System.exit(0);
+    }
+}
@@ -1,38 +1,66 @@
 package com.meteorcat.mix;
 
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.meteorcat.mix.constant.ActorStatus;
-import com.meteorcat.mix.core.ActorMessageQueue;
-import com.meteorcat.mix.core.ActorStateHashMap;
+import com.meteorcat.mix.constant.Protocols;
+import com.meteorcat.mix.core.ActorBlockingExecutor;
+import com.meteorcat.mix.core.ActorDispatchMetrics;
+import com.meteorcat.mix.core.ActorMailbox;
+import com.meteorcat.mix.core.ActorDispatchTable;
+import com.meteorcat.mix.core.ActorMappingRoute;
+import com.meteorcat.mix.core.ActorMessageWriter;
+import com.meteorcat.mix.core.ActorSessionHashMap;
+import com.meteorcat.mix.core.ActorSessionTimer;
+import com.meteorcat.mix.core.ActorTimingWheel;
 import com.meteorcat.mix.core.ActorUserHashMap;
 import com.meteorcat.mix.core.MessageFrame;
-import com.meteorcat.spring.boot.starter.ActorConfigurer;
+import com.meteorcat.mix.core.SessionContext;
+import com.meteorcat.mix.core.codec.BinaryMessageCodec;
+import com.meteorcat.mix.core.codec.DeflateMessageCodec;
+import com.meteorcat.mix.core.codec.JsonMessageCodec;
+import com.meteorcat.mix.core.codec.MessageCodec;
+import com.meteorcat.mix.core.codec.MessageDeflater;
+import com.meteorcat.mix.core.codec.MessageFilter;
+import com.meteorcat.mix.core.codec.MessagePacket;
+import com.meteorcat.mix.core.trace.FrameTrace;
+import com.meteorcat.mix.core.trace.FrameTracer;
 import com.meteorcat.spring.boot.starter.ActorEventContainer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 挂载 Websocket 服务
+ * 握手时候通过子协议选择数据格式, 没有指定子协议默认采用 JSON 文本
  */
 @Order
 @Component
-public class WebsocketApplication extends TextWebSocketHandler {
+public class WebsocketApplication extends AbstractWebSocketHandler implements SubProtocolCapable {
 
 
     /**
@@ -47,15 +75,75 @@ public class WebsocketApplication extends TextWebSocketHandler {
 
 
     /**
-     * Json 解析器
+     * JSON 文本协议
      */
-    final ObjectMapper mapper = new ObjectMapper();
+    final JsonMessageCodec jsonCodec = new JsonMessageCodec(new ObjectMapper());
 
 
     /**
-     * 玩家目前的状态
+     * 二进制协议
      */
-    final ActorStateHashMap status = new ActorStateHashMap();
+    final BinaryMessageCodec binaryCodec = new BinaryMessageCodec(new CBORMapper());
+
+
+    /**
+     * 握手子协议对应的编解码器, 包含压缩协议
+     */
+    final Map<String, MessageCodec> protocols = new LinkedHashMap<>();
+
+
+    /**
+     * 玩家消息信箱
+     */
+    final ActorMailbox mailbox;
+
+
+    /**
+     * 阻塞任务执行器
+     */
+    final ActorBlockingExecutor blocking;
+
+
+    /**
+     * 会话定时时间轮
+     */
+    final ActorTimingWheel wheel;
+
+
+    /**
+     * 会话空闲断开时间(毫秒), 超过时间没有收到客户端数据直接断开, 和容器配置共用 websocket.idle.timeout
+     */
+    final long idleTimeout;
+
+
+    /**
+     * 协议派发表
+     */
+    final ActorDispatchTable routes;
+
+
+    /**
+     * 协议派发监控指标
+     */
+    final ActorDispatchMetrics metrics;
+
+
+    /**
+     * 请求链路耗时统计
+     */
+    final FrameTracer tracer;
+
+
+    /**
+     * 解码阶段的请求过滤, 拒绝的请求计入监控
+     */
+    final MessageFilter filter = this::accept;
+
+
+    /**
+     * 会话上下文, 状态, 编解码器, 推送队列和定时信息都在上下文中
+     */
+    final ActorSessionHashMap sessions = new ActorSessionHashMap();
 
 
     /**
@@ -65,9 +153,9 @@ public class WebsocketApplication extends TextWebSocketHandler {
 
 
     /**
-     * 消息队列 - 数据采用线程安全处理
+     * 消息推送器
      */
-    final ActorMessageQueue messages = new ActorMessageQueue();
+    final ActorMessageWriter writer;
 
 
     /**
@@ -77,27 +165,26 @@ public class WebsocketApplication extends TextWebSocketHandler {
      * @param state   状态
      */
     public void setSessionState(WebSocketSession session, Integer state) {
-        if (status.containsKey(session)) {
-            status.put(session, state);
+        SessionContext context = sessions.get(session);
+        if (context != null) {
+            context.setState(state);
         }
     }
 
     /**
-     * 设置玩家ID
+     * 设置玩家ID, 如果该玩家已经在其他会话登录则解除旧会话绑定
      *
      * @param session 会话
-     * @param uid     Long
-     */
-    public void setSessionUid(WebSocketSession session, Long uid) {
-        if (users.containsValue(uid)) {
-            for (Map.Entry<WebSocketSession, Long> user : users.entrySet()) {
-                if (user.getValue().equals(uid)) {
-                    users.remove(user.getKey());
-                    break;
-                }
-            }
+     * @param uid     玩家ID
+     * @return 被顶替的会话|null
+     */
+    public WebSocketSession setSessionUid(WebSocketSession session, long uid) {
+        SessionContext context = sessions.get(session);
+        if (context == null) {
+            return null;
         }
-        users.put(session, uid);
+        SessionContext other = users.put(context, uid);
+        return other != null ? other.getSession() : null;
     }
 
 
@@ -107,16 +194,9 @@ public class WebsocketApplication extends TextWebSocketHandler {
      * @param uid 在线ID
      * @return WebSocketSession|Null
      */
-    public WebSocketSession getSessionUid(Long uid) {
-        if (users.containsValue(uid)) {
-            // 反查出UID绑定会话句柄
-            for (Map.Entry<WebSocketSession, Long> user : users.entrySet()) {
-                if (user.getValue().equals(uid)) {
-                    return user.getKey();
-                }
-            }
-        }
-        return null;
+    public WebSocketSession getSessionUid(long uid) {
+        SessionContext context = users.get(uid);
+        return context != null ? context.getSession() : null;
     }
 
 
@@ -127,60 +207,142 @@ public class WebsocketApplication extends TextWebSocketHandler {
      * @return Uid
      */
     public Long getSessionUid(WebSocketSession session) {
-        return users.get(session);
+        SessionContext context = sessions.get(session);
+        return context != null ? context.getUid() : null;
     }
 
 
     /**
      * 构造方法
      *
-     * @param container Actor events
+     * @param container   Actor events
+     * @param writer      消息推送器
+     * @param mailbox     玩家消息信箱
+     * @param blocking    阻塞任务执行器
+     * @param wheel       会话定时时间轮
+     * @param routes      协议派发表
+     * @param registry    监控指标
+     * @param tracer      请求链路耗时统计
+     * @param deflater    消息压缩器
+     * @param idleTimeout 会话空闲断开时间
      */
-    public WebsocketApplication(ActorEventContainer container) {
+    public WebsocketApplication(
+            ActorEventContainer container,
+            ActorMessageWriter writer,
+            ActorMailbox mailbox,
+            ActorBlockingExecutor blocking,
+            ActorTimingWheel wheel,
+            ActorDispatchTable routes,
+            MeterRegistry registry,
+            FrameTracer tracer,
+            MessageDeflater deflater,
+            @Value("${websocket.idle.timeout:600000}") long idleTimeout
+    ) {
         this.container = container;
+        this.writer = writer;
+        this.mailbox = mailbox;
+        this.blocking = blocking;
+        this.wheel = wheel;
+        this.idleTimeout = idleTimeout;
+        this.routes = routes;
+        this.metrics = new ActorDispatchMetrics(registry, routes);
+        this.tracer = tracer;
+        for (MessageCodec codec : List.of(jsonCodec, binaryCodec)) {
+            protocols.put(codec.getProtocol(), codec);
+            MessageCodec deflate = new DeflateMessageCodec(codec, deflater);
+            protocols.put(deflate.getProtocol(), deflate);
+        }
 
-        // 启动时候线程池追加定时服务
-        // 当数据队列为空的时候可以休眠下, 当 push 功能可以考虑继续唤醒定时任务
-        this.container.scheduleAtFixedRate(
-                this::fetchMessageQueue,
-                0,
-                17L,
-                TimeUnit.MILLISECONDS
-        );
+        // 会话和推送队列监控, 采集时候才遍历会话
+        Gauge.builder("actor.sessions", sessions, map -> count(map, ActorStatus.None))
+                .description("在线会话数量")
+                .tag("state", "None")
+                .register(registry);
+        Gauge.builder("actor.sessions", sessions, map -> count(map, ActorStatus.Authorized))
+                .description("在线会话数量")
+                .tag("state", "Authorized")
+                .register(registry);
+        Gauge.builder("actor.writer.pending", sessions, map -> map.values().stream().mapToInt(context -> context.getQueue().depth()).sum())
+                .description("所有会话待推送帧数")
+                .register(registry);
+        Gauge.builder("actor.writer.pending.max", sessions, map -> map.values().stream().mapToInt(context -> context.getQueue().depth()).max().orElse(0))
+                .description("单个会话最大待推送帧数")
+                .register(registry);
+        Gauge.builder("actor.writer.pending.bytes", sessions, map -> map.values().stream().mapToLong(context -> context.getQueue().bytes()).sum())
+                .description("所有会话待推送字节数")
+                .register(registry);
     }
 
 
     /**
-     * 检出会话队列待推送数据
+     * 统计指定状态的会话数量
+     *
+     * @param map   会话上下文
+     * @param state 会话状态
+     * @return double
      */
-    public void fetchMessageQueue() {
-        // 获取消息队列数据
-        if (!messages.isEmpty()) {
-            // 没有消息或者会话已经关闭跳过
-            MessageFrame frame = messages.poll();
-            if (frame == null) {
-                return;
+    static double count(ActorSessionHashMap map, int state) {
+        int count = 0;
+        for (SessionContext context : map.values()) {
+            if (context.getState() == state) {
+                count++;
             }
+        }
+        return count;
+    }
 
-            // 获取会话,关闭跳过
-            WebSocketSession session = frame.session();
-            if (!session.isOpen()) {
-                return;
-            }
 
-            // 获取消息内容, 如果位 null 代表关闭
-            Optional<TextMessage> data = frame.message();
-            try {
-                if (data.isPresent()) {
-                    session.sendMessage(data.get());
-                } else {
-                    session.close();
-                }
-            } catch (IOException e) {
-                logger.warn(e.getMessage());
-                throw new RuntimeException(e);
-            }
+    /**
+     * 启动会话心跳推送, 重复调用会替换之前的心跳任务
+     *
+     * @param session 会话
+     * @param period  推送周期
+     * @param unit    时间单位
+     */
+    public void heartbeat(WebSocketSession session, long period, TimeUnit unit) {
+        SessionContext context = sessions.get(session);
+        if (context != null) {
+            context.getTimer().setHeartbeat(wheel.schedule(() -> heartbeat(context, period, unit), period, unit));
+        }
+    }
+
+
+    /**
+     * 心跳包推送 - 采用时间轮递归
+     *
+     * @param context 会话上下文
+     * @param period  推送周期
+     * @param unit    时间单位
+     */
+    void heartbeat(SessionContext context, long period, TimeUnit unit) {
+        if (!context.getSession().isOpen()) {
+            return;
+        }
+
+        // 推送心跳包, 延时等待调用
+        write(context, Protocols.SYS_HEARTBEAT, null);
+        context.getTimer().setHeartbeat(wheel.schedule(() -> heartbeat(context, period, unit), period, unit));
+    }
+
+
+    /**
+     * 空闲检测, 没有超时则按剩余时间重新挂载
+     *
+     * @param context 会话上下文
+     */
+    void idle(SessionContext context) {
+        if (!context.getSession().isOpen()) {
+            return;
+        }
+
+        ActorSessionTimer timer = context.getTimer();
+        long elapsed = System.currentTimeMillis() - timer.getInbound();
+        if (elapsed >= idleTimeout) {
+            logger.debug("Idle = {}, {}ms", context, elapsed);
+            writer.write(context.getQueue(), new MessageFrame(context.getSession(), MessageFrame.NONE, null));
+            return;
         }
+        timer.setIdle(wheel.schedule(() -> idle(context), idleTimeout - elapsed, TimeUnit.MILLISECONDS));
     }
 
 
@@ -192,7 +354,25 @@ public class WebsocketApplication extends TextWebSocketHandler {
     @Override
     public void afterConnectionEstablished(@NonNull WebSocketSession session) {
         logger.debug("Established = {}", session);
-        status.put(session, ActorStatus.None);
+        String protocol = session.getAcceptedProtocol();
+        MessageCodec codec = protocol != null ? protocols.getOrDefault(protocol, jsonCodec) : jsonCodec;
+        SessionContext context = new SessionContext(session, writer.open(session, codec), ActorStatus.None);
+        sessions.put(session, context);
+
+        // 挂载空闲检测
+        context.getTimer().setIdle(wheel.schedule(() -> idle(context), idleTimeout, TimeUnit.MILLISECONDS));
+    }
+
+
+    /**
+     * 握手支持的子协议
+     *
+     * @return List
+     */
+    @Override
+    @NonNull
+    public List<String> getSubProtocols() {
+        return List.copyOf(protocols.keySet());
     }
 
 
@@ -204,9 +384,20 @@ public class WebsocketApplication extends TextWebSocketHandler {
      */
     @Override
     public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus reason) {
-        logger.debug("Close = {},{}", session, reason);
-        status.remove(session);
-        users.remove(session);
+        SessionContext context = sessions.remove(session);
+        logger.debug("Close = {},{}", context != null ? context : session, reason);
+        if (context == null) {
+            return;
+        }
+        context.getTimer().cancel();
+
+        // 玩家没有被其他会话顶替则通知离线
+        Long uid = users.remove(context);
+        if (uid != null && users.get(uid.longValue()) == null) {
+            // 投递到关闭会话的信箱, 在该会话已经投递的请求之后执行
+            post(context.key(), Protocols.SYS_PLAYER_LOGOUT, this, session, uid);
+        }
+        context.getQueue().clear();
     }
 
 
@@ -222,33 +413,225 @@ public class WebsocketApplication extends TextWebSocketHandler {
         if (message.getPayloadLength() <= 0) {
             return;
         }
+        dispatch(session, message);
+    }
+
+
+    /**
+     * 采用二进制数据接收 [varint value][varint length][args]
+     *
+     * @param session handler
+     * @param message binary
+     * @throws Exception Error
+     */
+    @Override
+    protected void handleBinaryMessage(@NonNull WebSocketSession session, @NonNull BinaryMessage message) throws Exception {
+        if (message.getPayloadLength() <= 0) {
+            return;
+        }
+        dispatch(session, message);
+    }
 
-        // json: { "value": 100, args:{ data.... } }
-        JsonNode json = mapper.readTree(message.asBytes());
-        if (!json.isObject()) {
+
+    /**
+     * 采用会话握手确定的编解码器解码请求并转发给 Actor 处理
+     * 帧类型和会话协议不符合, 协议不存在或者会话状态不符合的请求在解码阶段直接丢弃, 参数只有确认处理才会构建
+     *
+     * @param session 会话
+     * @param message 请求消息
+     * @throws IOException Error
+     */
+    void dispatch(WebSocketSession session, WebSocketMessage<?> message) throws IOException {
+        long start = System.nanoTime();
+        SessionContext context = sessions.get(session);
+        if (context == null) {
             return;
         }
+        context.touch();
 
-        // json.value
-        JsonNode valueNode = json.get("value");
-        if (valueNode == null || !valueNode.isInt()) {
+        // 帧类型和会话协议不符合计入参数错误
+        MessageCodec codec = context.getCodec();
+        if (!codec.supports(message)) {
+            logger.debug("Frame type mismatch: {}, {}", codec.getProtocol(), message.getClass().getSimpleName());
+            metrics.invalid();
             return;
         }
 
-        // container value
-        Integer value = valueNode.intValue();
-        ActorConfigurer configurer = container.get(value);
-        if (configurer == null) {
+        MessagePacket packet = codec.decode(message, context.getState(), filter);
+        if (packet == null) {
             return;
         }
 
-        // json.args
-        JsonNode args = json.get("args");
-        args = args.isObject() ? args : null;
+        // 按协议值直接定位派发表
+        int value = packet.value();
+        ActorMappingRoute route = routes.route(value);
+        if (route == null) {
+            return;
+        }
 
-        // forward configurer
-        logger.debug("Frame: {}", message);
-        configurer.invoke(value, status.get(session), this, session, args);
+        // args 绑定成处理方法声明的类型
+        Object args;
+        try {
+            args = route.args(packet);
+        } catch (IOException exception) {
+            logger.debug("Frame args error: {}, {}", packet, exception.getMessage());
+            metrics.invalid();
+            write(context, route.error() != 0 ? route.error() : Protocols.SYS_PARAM_ERROR, null);
+            return;
+        }
+
+        // forward configurer, 同一玩家的消息投递到同一个信箱顺序执行, 阻塞处理交给阻塞任务执行器
+        logger.debug("Frame: {}", packet);
+        // 按采样率跟踪请求链路, 处理期间推送的第一帧响应写出之后记录耗时
+        FrameTrace trace = tracer.start(value, start);
+        Runnable task = () -> {
+            if (trace != null) {
+                tracer.enter(trace);
+            }
+            try {
+                route.invoke(this, session, args);
+            } finally {
+                if (trace != null) {
+                    tracer.exit(trace);
+                }
+                metrics.record(value, start);
+            }
+        };
+        long key = context.key();
+        if (route.blocking()) {
+            // 经过会话信箱再交给阻塞任务执行器, 保证在该会话之前的请求处理完成之后才开始
+            // 处理期间该会话之后的请求排队, 完成之后投递回会话信箱继续执行
+            Runnable done = () -> mailbox.execute(key, context::unblock);
+            mailbox.execute(key, () -> context.run(() -> {
+                context.block();
+                boolean accepted = blocking.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        done.run();
+                    }
+                });
+                if (!accepted) {
+                    context.unblock();
+                }
+            }));
+        } else {
+            mailbox.execute(key, () -> context.run(task));
+        }
+    }
+
+
+    /**
+     * 确认请求是否需要处理, 不处理的请求计入监控
+     *
+     * @param value 请求协议值
+     * @param state 会话状态
+     * @return boolean
+     */
+    boolean accept(int value, int state) {
+        ActorMappingRoute route = routes.route(value);
+        if (route == null) {
+            metrics.unknown();
+            return false;
+        }
+        if (!route.accept(state)) {
+            metrics.reject(value);
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * 玩家信箱键, 在线玩家采用绑定会话的信箱键, 离线玩家采用玩家ID
+     *
+     * @param uid 玩家ID
+     * @return long
+     */
+    long key(long uid) {
+        SessionContext context = users.get(uid);
+        return context != null ? context.key() : uid;
+    }
+
+
+    /**
+     * 执行阻塞任务, 完成之后结果投递回玩家信箱处理, 失败只记录日志
+     *
+     * @param uid      玩家ID
+     * @param work     阻塞任务, 如数据库加载
+     * @param callback 结果处理, 在玩家信箱执行
+     * @param <T>      结果类型
+     */
+    public <T> void offload(long uid, Supplier<T> work, Consumer<T> callback) {
+        offload(uid, work, callback, exception -> {
+        });
+    }
+
+
+    /**
+     * 执行阻塞任务, 完成之后结果投递回玩家信箱处理
+     *
+     * @param uid      玩家ID
+     * @param work     阻塞任务, 如数据库加载
+     * @param callback 结果处理, 在玩家信箱执行
+     * @param failure  失败处理, 在玩家信箱执行, 如响应 SYS_SERVER_ERROR
+     * @param <T>      结果类型
+     */
+    public <T> void offload(long uid, Supplier<T> work, Consumer<T> callback, Consumer<RuntimeException> failure) {
+        // 提交时候确定信箱键, 回调回到发起时候的会话信箱
+        long key = key(uid);
+        // 采样中的请求跟随回调转移, 回调推送的响应同样计入该请求耗时
+        FrameTrace trace = tracer.suspend();
+        if (trace == null) {
+            blocking.submit(key, work, callback, failure);
+            return;
+        }
+        blocking.submit(key, work,
+                result -> resume(trace, () -> callback.accept(result)),
+                exception -> resume(trace, () -> failure.accept(exception)));
+    }
+
+
+    /**
+     * 恢复采样中的请求执行阻塞回调, 完成之后释放
+     *
+     * @param trace 采样中的请求
+     * @param task  回调
+     */
+    void resume(FrameTrace trace, Runnable task) {
+        FrameTrace previous = tracer.resume(trace);
+        try {
+            task.run();
+        } finally {
+            tracer.release(trace, previous);
+        }
+    }
+
+
+    /**
+     * 投递程序内部调用到玩家信箱, 和该玩家的客户端请求保持单线程顺序执行
+     *
+     * @param uid   玩家ID
+     * @param value 协议值
+     * @param args  调用参数
+     */
+    public void invoke(long uid, int value, Object... args) {
+        post(key(uid), value, args);
+    }
+
+
+    /**
+     * 投递程序内部调用到指定信箱
+     *
+     * @param key   信箱键
+     * @param value 协议值
+     * @param args  调用参数
+     */
+    void post(long key, int value, Object... args) {
+        ActorMappingRoute route = routes.route(value);
+        if (route != null && route.accept(ActorStatus.Memory)) {
+            mailbox.execute(key, () -> route.invoke(args));
+        }
     }
 
 
@@ -258,8 +641,11 @@ public class WebsocketApplication extends TextWebSocketHandler {
      * @param session 会话
      * @param value   响应协议值
      */
-    public void push(WebSocketSession session, Integer value) {
-        push(session, value, new HashMap<>(0));
+    public void push(WebSocketSession session, int value) {
+        SessionContext context = sessions.get(session);
+        if (context != null) {
+            write(context, value, null);
+        }
     }
 
 
@@ -270,15 +656,10 @@ public class WebsocketApplication extends TextWebSocketHandler {
      * @param value   响应协议值
      * @param args    响应JSON
      */
-    public void push(WebSocketSession session, Integer value, Map<String, Object> args) {
-        Map<String, Object> response = new HashMap<>() {{
-            put("value", value);
-            put("args", args);
-        }};
-        try {
-            push(session, mapper.writeValueAsString(response));
-        } catch (JsonProcessingException exception) {
-            logger.error(exception.getMessage());
+    public void push(WebSocketSession session, int value, Map<String, Object> args) {
+        SessionContext context = sessions.get(session);
+        if (context != null) {
+            write(context, value, args);
         }
     }
 
@@ -290,7 +671,94 @@ public class WebsocketApplication extends TextWebSocketHandler {
      * @param text    数据
      */
     public void push(WebSocketSession session, String text) {
-        messages.add(new MessageFrame(session, Optional.of(new TextMessage(text))));
+        push(session, new TextMessage(text));
+    }
+
+
+    /**
+     * 推送消息给队列处理
+     *
+     * @param session 会话
+     * @param message 已编码数据
+     */
+    public void push(WebSocketSession session, WebSocketMessage<?> message) {
+        SessionContext context = sessions.get(session);
+        if (context != null) {
+            writer.write(context.getQueue(), new MessageFrame(session, MessageFrame.NONE, message, tracer.attach()));
+        }
+    }
+
+
+    /**
+     * 广播给所有在线会话, 每种编码只编码一次
+     *
+     * @param value 响应协议值
+     * @param args  响应JSON, null 代表没有参数
+     */
+    public void broadcast(int value, Map<String, Object> args) {
+        fanout(sessions.values(), value, args);
+    }
+
+
+    /**
+     * 广播给指定状态的会话, 如只推送给已经登录的玩家
+     *
+     * @param state 会话状态, 参考 ActorStatus
+     * @param value 响应协议值
+     * @param args  响应JSON, null 代表没有参数
+     */
+    public void broadcast(int state, int value, Map<String, Object> args) {
+        List<SessionContext> contexts = new ArrayList<>();
+        for (SessionContext context : sessions.values()) {
+            if (context.getState() == state) {
+                contexts.add(context);
+            }
+        }
+        fanout(contexts, value, args);
+    }
+
+
+    /**
+     * 组播给指定玩家, 不在线的玩家直接跳过
+     *
+     * @param uids  玩家ID列表
+     * @param value 响应协议值
+     * @param args  响应JSON, null 代表没有参数
+     */
+    public void multicast(Collection<Long> uids, int value, Map<String, Object> args) {
+        List<SessionContext> contexts = new ArrayList<>(uids.size());
+        for (Long uid : uids) {
+            SessionContext context = uid != null ? users.get(uid.longValue()) : null;
+            if (context != null) {
+                contexts.add(context);
+            }
+        }
+        fanout(contexts, value, args);
+    }
+
+
+    /**
+     * 编码一次之后推送给多个会话, 编码结果按会话的编解码器共享
+     *
+     * @param contexts 会话上下文列表
+     * @param value    响应协议值
+     * @param args     响应JSON, null 代表没有参数
+     */
+    void fanout(Iterable<SessionContext> contexts, int value, Map<String, Object> args) {
+        Map<MessageCodec, WebSocketMessage<?>> encoded = new IdentityHashMap<>(4);
+        try {
+            for (SessionContext context : contexts) {
+                MessageCodec codec = context.getCodec();
+                WebSocketMessage<?> message = encoded.get(codec);
+                if (message == null) {
+                    message = args == null ? codec.encode(value) : codec.encode(value, args);
+                    encoded.put(codec, message);
+                }
+                writer.write(context.getQueue(), new MessageFrame(context.getSession(), value, codec.share(message)));
+            }
+        } catch (IOException exception) {
+            logger.error(exception.getMessage());
+        }
     }
 
     /**
@@ -299,6 +767,27 @@ public class WebsocketApplication extends TextWebSocketHandler {
      * @param session 会话
      */
     public void quit(WebSocketSession session) {
-        messages.add(new MessageFrame(session, Optional.empty()));
+        SessionContext context = sessions.get(session);
+        if (context != null) {
+            writer.write(context.getQueue(), new MessageFrame(session, MessageFrame.NONE, null));
+        }
+    }
+
+
+    /**
+     * 编码并写入会话队列, 唤醒推送
+     *
+     * @param context 会话上下文
+     * @param value   响应协议值
+     * @param args    响应JSON, null 代表没有参数
+     */
+    void write(SessionContext context, int value, Map<String, Object> args) {
+        MessageCodec codec = context.getCodec();
+        try {
+            WebSocketMessage<?> message = args == null ? codec.encode(value) : codec.encode(value, args);
+            writer.write(context.getQueue(), new MessageFrame(context.getSession(), value, message, tracer.attach()));
+        } catch (IOException exception) {
+            logger.error(exception.getMessage());
+        }
     }
 }
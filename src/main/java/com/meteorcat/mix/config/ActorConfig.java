@@ -1,15 +1,22 @@
 package com.meteorcat.mix.config;
 
+import com.meteorcat.mix.core.ActorBlockingExecutor;
+import com.meteorcat.mix.core.ActorDispatchTable;
+import com.meteorcat.mix.core.ActorMailbox;
+import com.meteorcat.mix.core.ActorMessageWriter;
+import com.meteorcat.mix.core.ActorTimingWheel;
+import com.meteorcat.mix.core.codec.MessageDeflater;
+import com.meteorcat.mix.core.trace.FrameTraceEndpoint;
+import com.meteorcat.mix.core.trace.FrameTracer;
 import com.meteorcat.spring.boot.starter.ActorConfigurer;
 import com.meteorcat.spring.boot.starter.ActorEventContainer;
 import com.meteorcat.spring.boot.starter.ActorEventMonitor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.Map;
-
 
 /**
  * Actor 配置类
@@ -23,6 +30,104 @@ public class ActorConfig {
     @Value("${actor.monitor.core:4}")
     private Integer monitorCore;
 
+    /**
+     * 消息派发方式
+     *   mailbox: 同一玩家的消息投递到固定的单线程信箱顺序执行
+     *   direct: 直接在收到消息的线程执行
+     */
+    @Value("${actor.dispatch.mode:mailbox}")
+    private String dispatchMode;
+
+    /**
+     * 阻塞任务执行方式: pool | virtual | inline
+     */
+    @Value("${actor.blocking.mode:pool}")
+    private String blockingMode;
+
+    /**
+     * 阻塞任务 pool 方式线程数
+     */
+    @Value("${actor.blocking.pool:16}")
+    private Integer blockingPool;
+
+    /**
+     * 消息推送线程数
+     */
+    @Value("${actor.writer.core:2}")
+    private Integer writerCore;
+
+    /**
+     * 单个会话最多积压帧数
+     */
+    @Value("${actor.writer.frames:128}")
+    private Integer writerFrames;
+
+    /**
+     * 单个会话最多积压字节数
+     */
+    @Value("${actor.writer.bytes:65536}")
+    private Long writerBytes;
+
+    /**
+     * 积压超出处理策略: drop-oldest | coalesce | disconnect
+     */
+    @Value("${actor.writer.overflow:drop-oldest}")
+    private String writerOverflow;
+
+    /**
+     * 单帧发送超时(毫秒)
+     */
+    @Value("${actor.writer.timeout:10000}")
+    private Integer writerTimeout;
+
+    /**
+     * 批量推送单帧字节上限, 0 代表不合并
+     */
+    @Value("${actor.writer.batch.bytes:0}")
+    private Integer writerBatchBytes;
+
+    /**
+     * 批量推送等待上限(毫秒)
+     */
+    @Value("${actor.writer.batch.linger:0}")
+    private Long writerBatchLinger;
+
+    /**
+     * 压缩协议会话的压缩阈值(字节)
+     */
+    @Value("${actor.writer.deflate.threshold:1024}")
+    private Integer deflateThreshold;
+
+    /**
+     * 压缩等级 1-9
+     */
+    @Value("${actor.writer.deflate.level:6}")
+    private Integer deflateLevel;
+
+    /**
+     * 时间轮刻度(毫秒)
+     */
+    @Value("${actor.timer.tick:100}")
+    private Long timerTick;
+
+    /**
+     * 时间轮槽位数量
+     */
+    @Value("${actor.timer.wheel:512}")
+    private Integer timerWheel;
+
+    /**
+     * 请求链路跟踪采样率, 每 N 个请求跟踪一个, 0 代表关闭
+     */
+    @Value("${actor.trace.sample:64}")
+    private Integer traceSample;
+
+    /**
+     * 保留最近完成的跟踪请求数量, 用于查询最慢请求
+     */
+    @Value("${actor.trace.recent:1024}")
+    private Integer traceRecent;
+
     /**
      * Spring运行时
      */
@@ -50,4 +155,110 @@ public class ActorConfig {
     public ActorEventContainer searchActor() {
         return new ActorEventContainer(new ActorEventMonitor(monitorCore),context);
     }
+
+
+    /**
+     * 配置协议派发表, 在 Actor 运行时加载完成之后构建, 之后不再修改
+     *
+     * @param container Actor 运行时
+     * @return ActorDispatchTable
+     */
+    @Bean
+    public ActorDispatchTable dispatchTable(ActorEventContainer container) {
+        return ActorDispatchTable.build(container, context.getBeansOfType(ActorConfigurer.class).values());
+    }
+
+
+    /**
+     * 配置会话消息推送器
+     *
+     * @param registry 监控指标
+     * @return ActorMessageWriter
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ActorMessageWriter messageWriter(MeterRegistry registry) {
+        return new ActorMessageWriter(
+                writerCore,
+                writerFrames,
+                writerBytes,
+                ActorMessageWriter.Overflow.of(writerOverflow),
+                writerTimeout,
+                writerBatchBytes,
+                writerBatchLinger,
+                registry
+        );
+    }
+
+
+    /**
+     * 配置会话定时时间轮, 由 Actor 运行时推进
+     *
+     * @param container Actor 运行时
+     * @return ActorTimingWheel
+     */
+    @Bean(destroyMethod = "stop")
+    public ActorTimingWheel timingWheel(ActorEventContainer container) {
+        ActorTimingWheel wheel = new ActorTimingWheel(timerTick, timerWheel);
+        wheel.start(container);
+        return wheel;
+    }
+
+
+    /**
+     * 配置玩家消息信箱, 信箱数量和 Actor 线程数保持一致
+     *
+     * @return ActorMailbox
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ActorMailbox mailbox() {
+        return new ActorMailbox("direct".equalsIgnoreCase(dispatchMode) ? 0 : monitorCore);
+    }
+
+
+    /**
+     * 配置阻塞任务执行器, 结果投递回玩家信箱
+     *
+     * @param mailbox 玩家消息信箱
+     * @return ActorBlockingExecutor
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ActorBlockingExecutor blockingExecutor(ActorMailbox mailbox) {
+        return new ActorBlockingExecutor(blockingMode, blockingPool, mailbox);
+    }
+
+
+    /**
+     * 配置消息压缩器, Deflater 池大小和推送线程数相同
+     *
+     * @param registry 监控指标
+     * @return MessageDeflater
+     */
+    @Bean
+    public MessageDeflater messageDeflater(MeterRegistry registry) {
+        return new MessageDeflater(deflateThreshold, deflateLevel, writerCore, registry);
+    }
+
+
+    /**
+     * 配置请求链路耗时统计
+     *
+     * @param routes 协议派发表
+     * @return FrameTracer
+     */
+    @Bean
+    public FrameTracer frameTracer(ActorDispatchTable routes) {
+        return new FrameTracer(traceSample, routes.size(), traceRecent);
+    }
+
+
+    /**
+     * 配置请求链路耗时监控端点
+     *
+     * @param tracer 请求链路耗时统计
+     * @return FrameTraceEndpoint
+     */
+    @Bean
+    public FrameTraceEndpoint frameTraceEndpoint(FrameTracer tracer) {
+        return new FrameTraceEndpoint(tracer);
+    }
 }
@@ -1,14 +1,22 @@
 package com.meteorcat.mix.config;
 
 import com.meteorcat.mix.WebsocketApplication;
+import com.meteorcat.mix.core.codec.DeflateMessageCodec;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
 import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 /**
  * Websocket加载配置
@@ -67,7 +75,9 @@ public class WebsocketConfig implements WebSocketConfigurer {
         if (handler == null) {
             throw new RuntimeException("failed by WebSocketHandler: WebSocketHandler");
         }
-        registry.addHandler(handler, serverPath).setAllowedOrigins(allowOrigins);
+        registry.addHandler(handler, serverPath)
+                .setHandshakeHandler(new DeflateHandshakeHandler())
+                .setAllowedOrigins(allowOrigins);
     }
 
 
@@ -84,4 +94,49 @@ public class WebsocketConfig implements WebSocketConfigurer {
         container.setMaxSessionIdleTimeout(idleTimeout);
         return container;
     }
+
+
+    /**
+     * 协商为压缩子协议的会话由服务端按阈值压缩, 不再协商 permessage-deflate 扩展避免重复压缩
+     * 握手时候先选择子协议再过滤扩展, 两者在同一个线程顺序调用, 通过线程变量传递选择结果
+     */
+    static class DeflateHandshakeHandler extends DefaultHandshakeHandler {
+
+        /**
+         * 扩展名称
+         */
+        final static String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+        /**
+         * 当前握手选择的子协议
+         */
+        final ThreadLocal<String> selected = new ThreadLocal<>();
+
+
+        @Override
+        @Nullable
+        protected String selectProtocol(@NonNull List<String> requestedProtocols, @NonNull WebSocketHandler webSocketHandler) {
+            String protocol = super.selectProtocol(requestedProtocols, webSocketHandler);
+            selected.set(protocol);
+            return protocol;
+        }
+
+
+        @Override
+        @NonNull
+        protected List<WebSocketExtension> filterRequestedExtensions(
+                @NonNull ServerHttpRequest request,
+                @NonNull List<WebSocketExtension> requested,
+                @NonNull List<WebSocketExtension> supported) {
+            List<WebSocketExtension> extensions = super.filterRequestedExtensions(request, requested, supported);
+            String protocol = selected.get();
+            selected.remove();
+            if (protocol == null || !protocol.endsWith(DeflateMessageCodec.SUFFIX)) {
+                return extensions;
+            }
+            return extensions.stream()
+                    .filter(extension -> !PERMESSAGE_DEFLATE.equalsIgnoreCase(extension.getName()))
+                    .toList();
+        }
+    }
 }
@@ -16,5 +16,7 @@ public class Protocols {
     public static final int SYS_HEARTBEAT = 1; // 心跳包推送
     public static final int SYS_PLAYER_EXISTS = 2; // 玩家存在
     public static final int SYS_PARAM_ERROR = 3; // 参数错误
+    public static final int SYS_PLAYER_LOGOUT = 4; // 玩家离线
+    public static final int SYS_SERVER_ERROR = 5; // 服务端错误
     public static final int SYS_CHANGE_GOLD = 10; // 修改玩家金币
 }
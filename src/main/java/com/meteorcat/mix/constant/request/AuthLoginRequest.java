@@ -0,0 +1,60 @@
+package com.meteorcat.mix.constant.request;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.meteorcat.mix.core.codec.MessageDecoder;
+
+import java.io.IOException;
+
+/**
+ * 客户端推送给服务端请求
+ * 协议: AUTH_LOGIN = 100, 由 tools/protocol.py 生成
+ *
+ * @param uid    玩家ID
+ * @param secret 登录授权码
+ */
+public record AuthLoginRequest(long uid, String secret) {
+
+    /**
+     * 请求参数解码器
+     */
+    public static final MessageDecoder<AuthLoginRequest> DECODER = AuthLoginRequest::decode;
+
+
+    /**
+     * 从数据流直接解码请求参数
+     *
+     * @param parser 参数数据流, null 代表请求没有参数
+     * @return AuthLoginRequest
+     * @throws IOException 参数缺失或者类型不匹配
+     */
+    public static AuthLoginRequest decode(JsonParser parser) throws IOException {
+        long uid = 0L;
+        boolean uidPresent = false;
+        String secret = null;
+        if (parser != null) {
+            MessageDecoder.object(parser);
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "uid" -> {
+                        uid = MessageDecoder.readLong(parser, token, "uid");
+                        uidPresent = true;
+                    }
+                    case "secret" -> {
+                        secret = MessageDecoder.readString(parser, token, "secret");
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if (!uidPresent) {
+            throw MessageDecoder.error(parser, "missing field: uid");
+        }
+        if (secret == null) {
+            throw MessageDecoder.error(parser, "missing field: secret");
+        }
+        return new AuthLoginRequest(uid, secret);
+    }
+}
@@ -0,0 +1,50 @@
+package com.meteorcat.mix.constant.request;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.meteorcat.mix.core.codec.MessageDecoder;
+
+import java.io.IOException;
+
+/**
+ * 创建用户
+ * 协议: PLAYER_CREATE = 200, 由 tools/protocol.py 生成
+ *
+ * @param nickname 玩家昵称
+ */
+public record PlayerCreateRequest(String nickname) {
+
+    /**
+     * 请求参数解码器
+     */
+    public static final MessageDecoder<PlayerCreateRequest> DECODER = PlayerCreateRequest::decode;
+
+
+    /**
+     * 从数据流直接解码请求参数
+     *
+     * @param parser 参数数据流, null 代表请求没有参数
+     * @return PlayerCreateRequest
+     * @throws IOException 参数缺失或者类型不匹配
+     */
+    public static PlayerCreateRequest decode(JsonParser parser) throws IOException {
+        String nickname = null;
+        if (parser != null) {
+            MessageDecoder.object(parser);
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "nickname" -> {
+                        nickname = MessageDecoder.readString(parser, token, "nickname");
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if (nickname == null) {
+            throw MessageDecoder.error(parser, "missing field: nickname");
+        }
+        return new PlayerCreateRequest(nickname);
+    }
+}
@@ -0,0 +1,24 @@
+package com.meteorcat.mix.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 指定 @ActorMapping 处理方法参数缺失或者类型错误时候响应的协议值
+ * 没有声明的处理方法统一响应 SYS_PARAM_ERROR, 用于保持原有协议的错误响应不变
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ActorArgsError {
+
+    /**
+     * 参数错误响应的协议值
+     *
+     * @return int
+     */
+    int value();
+}
@@ -0,0 +1,20 @@
+package com.meteorcat.mix.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标识 @ActorMapping 处理方法包含阻塞调用(数据库|网络等)
+ * 被标识的方法不会在玩家信箱执行, 而是在该会话之前的请求处理完成之后交给阻塞任务执行器处理, 避免占用信箱线程
+ * 处理完成之前该会话之后的请求排队等待, 完成之后投递回会话信箱继续执行
+ * 注意: 方法和程序内部调用以及阻塞回调并行执行, 不能直接读写玩家状态(内存实体|金币账本等),
+ * 需要通过 WebsocketApplication.offload 把结果投递回玩家信箱处理
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ActorBlocking {
+}
@@ -0,0 +1,168 @@
+package com.meteorcat.mix.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 阻塞任务执行器
+ * 数据库加载等阻塞调用在这里执行, 完成之后把结果投递回玩家信箱继续处理
+ * 执行方式:
+ *   pool: 固定数量的平台线程, 默认方式
+ *   virtual: 虚拟线程, 运行时不支持(JDK 21 以下)时警告并退化为 pool
+ *   inline: 直接在调用线程执行
+ */
+public class ActorBlockingExecutor {
+
+    /**
+     * 日志句柄
+     */
+    final Logger logger = LoggerFactory.getLogger(ActorBlockingExecutor.class);
+
+    /**
+     * 玩家消息信箱
+     */
+    final ActorMailbox mailbox;
+
+    /**
+     * 阻塞任务线程, inline 方式为 null
+     */
+    final ExecutorService executor;
+
+
+    /**
+     * 构造方法
+     *
+     * @param mode    执行方式
+     * @param threads pool 方式的线程数量
+     * @param mailbox 玩家消息信箱
+     */
+    public ActorBlockingExecutor(String mode, int threads, ActorMailbox mailbox) {
+        this.mailbox = mailbox;
+        if ("inline".equalsIgnoreCase(mode)) {
+            this.executor = null;
+        } else {
+            ExecutorService virtual = "virtual".equalsIgnoreCase(mode) ? virtual() : null;
+            if ("virtual".equalsIgnoreCase(mode) && virtual == null) {
+                logger.warn("运行时不支持虚拟线程(需要 JDK 21), 阻塞任务退化为 {} 线程的 pool 方式", Math.max(1, threads));
+            }
+            this.executor = virtual != null ? virtual : pool(threads);
+        }
+        logger.info("阻塞任务执行方式: {} -> {}", mode, executor);
+    }
+
+
+    /**
+     * 通过反射创建虚拟线程执行器, 保证在低版本 JDK 也可以编译运行
+     *
+     * @return ExecutorService|null
+     */
+    static ExecutorService virtual() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException exception) {
+            return null;
+        }
+    }
+
+
+    /**
+     * 创建平台线程池
+     *
+     * @param threads 线程数量
+     * @return ExecutorService
+     */
+    static ExecutorService pool(int threads) {
+        AtomicInteger index = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "actor-blocking-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * 执行阻塞任务
+     *
+     * @param task 任务
+     * @return 是否接受任务, 执行器退出之后拒绝
+     */
+    public boolean execute(Runnable task) {
+        if (executor == null) {
+            task.run();
+            return true;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable throwable) {
+                    logger.error("Blocking task error: {}", throwable.getMessage(), throwable);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException exception) {
+            logger.warn("Blocking rejected = {}", exception.getMessage());
+            return false;
+        }
+    }
+
+
+    /**
+     * 执行阻塞任务, 结果投递回玩家信箱处理
+     * 任务异常或者执行器拒绝同样投递回玩家信箱, 由调用方响应错误
+     *
+     * @param key      玩家UID或者会话键
+     * @param work     阻塞任务
+     * @param callback 结果处理, 在玩家信箱执行
+     * @param failure  失败处理, 在玩家信箱执行
+     * @param <T>      结果类型
+     */
+    public <T> void submit(long key, Supplier<T> work, Consumer<T> callback, Consumer<RuntimeException> failure) {
+        if (executor == null) {
+            T result;
+            try {
+                result = work.get();
+            } catch (RuntimeException exception) {
+                logger.error("Blocking work error: {}", exception.getMessage(), exception);
+                failure.accept(exception);
+                return;
+            }
+            callback.accept(result);
+            return;
+        }
+
+        boolean accepted = execute(() -> {
+            T result;
+            try {
+                result = work.get();
+            } catch (RuntimeException exception) {
+                logger.error("Blocking work error: {}", exception.getMessage(), exception);
+                mailbox.execute(key, () -> failure.accept(exception));
+                return;
+            }
+            mailbox.execute(key, () -> callback.accept(result));
+        });
+        if (!accepted) {
+            mailbox.execute(key, () -> failure.accept(new RejectedExecutionException("Blocking executor shutdown")));
+        }
+    }
+
+
+    /**
+     * 退出执行器
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.meteorcat.mix.core;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 协议派发监控指标
+ * 按派发表预先注册每个协议值的指标, 派发时候直接数组下标访问
+ */
+public class ActorDispatchMetrics {
+
+    /**
+     * 协议值标签
+     */
+    final static String VALUE_TAG = "value";
+
+    /**
+     * 按协议值索引的派发耗时, 从收到请求到处理完成
+     */
+    final Timer[] timers;
+
+    /**
+     * 按协议值索引的会话状态拒绝次数
+     */
+    final Counter[] rejected;
+
+    /**
+     * 未注册协议请求次数
+     */
+    final Counter unknown;
+
+    /**
+     * 参数错误次数
+     */
+    final Counter invalid;
+
+
+    /**
+     * 构造方法
+     *
+     * @param registry 监控指标
+     * @param routes   协议派发表
+     */
+    public ActorDispatchMetrics(MeterRegistry registry, ActorDispatchTable routes) {
+        this.timers = new Timer[routes.size()];
+        this.rejected = new Counter[routes.size()];
+        for (int value = 0; value < routes.size(); value++) {
+            if (routes.route(value) == null) {
+                continue;
+            }
+            String tag = Integer.toString(value);
+            timers[value] = Timer.builder("actor.dispatch")
+                    .description("协议派发耗时, 包含信箱排队时间")
+                    .tag(VALUE_TAG, tag)
+                    .register(registry);
+            rejected[value] = Counter.builder("actor.dispatch.rejected")
+                    .description("会话状态不允许的请求次数")
+                    .tag(VALUE_TAG, tag)
+                    .register(registry);
+        }
+        this.unknown = Counter.builder("actor.dispatch.unknown")
+                .description("未注册协议请求次数")
+                .register(registry);
+        this.invalid = Counter.builder("actor.dispatch.invalid")
+                .description("请求参数错误次数")
+                .register(registry);
+    }
+
+
+    /**
+     * 记录派发耗时
+     *
+     * @param value 协议值
+     * @param start 收到请求的时间(System.nanoTime)
+     */
+    public void record(int value, long start) {
+        Timer timer = value >= 0 && value < timers.length ? timers[value] : null;
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+
+    /**
+     * 记录会话状态拒绝
+     *
+     * @param value 协议值
+     */
+    public void reject(int value) {
+        Counter counter = value >= 0 && value < rejected.length ? rejected[value] : null;
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+
+    /**
+     * 记录未注册协议
+     */
+    public void unknown() {
+        unknown.increment();
+    }
+
+
+    /**
+     * 记录参数错误
+     */
+    public void invalid() {
+        invalid.increment();
+    }
+}
@@ -0,0 +1,159 @@
+package com.meteorcat.mix.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.meteorcat.mix.core.codec.MessageDecoder;
+import com.meteorcat.mix.core.codec.MessageFilter;
+import com.meteorcat.spring.boot.starter.ActorConfigurer;
+import com.meteorcat.spring.boot.starter.ActorEventContainer;
+import com.meteorcat.spring.boot.starter.ActorMapping;
+import org.springframework.util.ClassUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+
+/**
+ * 协议派发表
+ * 协议值都是较小的连续整数, 直接按协议值作为数组下标保存路由, 启动构建之后不再修改
+ */
+public class ActorDispatchTable implements MessageFilter {
+
+    /**
+     * 按协议值索引的路由
+     */
+    final ActorMappingRoute[] routes;
+
+
+    /**
+     * 构造方法
+     *
+     * @param routes 按协议值索引的路由
+     */
+    ActorDispatchTable(ActorMappingRoute[] routes) {
+        this.routes = routes;
+    }
+
+
+    /**
+     * 获取协议路由
+     *
+     * @param value 协议值
+     * @return ActorMappingRoute|null
+     */
+    public ActorMappingRoute route(int value) {
+        return value >= 0 && value < routes.length ? routes[value] : null;
+    }
+
+
+    @Override
+    public boolean accept(int value, int state) {
+        ActorMappingRoute route = route(value);
+        return route != null && route.accept(state);
+    }
+
+
+    /**
+     * 派发表容量
+     *
+     * @return int
+     */
+    public int size() {
+        return routes.length;
+    }
+
+
+    /**
+     * 从 Actor 的 @ActorMapping 声明构建派发表
+     * 只收录 Actor 运行时已经注册的协议
+     *
+     * @param container   Actor 运行时, null 代表不需要确认注册, 如脱离运行时的基准测试
+     * @param configurers 所有 Actor
+     * @return ActorDispatchTable
+     */
+    public static ActorDispatchTable build(ActorEventContainer container, Collection<ActorConfigurer> configurers) {
+        ActorMappingRoute[] routes = new ActorMappingRoute[0];
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        for (ActorConfigurer configurer : configurers) {
+            for (Method method : ClassUtils.getUserClass(configurer).getMethods()) {
+                ActorMapping mapping = method.getAnnotation(ActorMapping.class);
+                if (mapping == null) {
+                    continue;
+                }
+
+                int value = mapping.value();
+                if (value < 0 || (container != null && container.get(value) == null)) {
+                    continue;
+                }
+                if (value >= routes.length) {
+                    ActorMappingRoute[] expand = new ActorMappingRoute[value + 1];
+                    System.arraycopy(routes, 0, expand, 0, routes.length);
+                    routes = expand;
+                }
+                if (routes[value] != null) {
+                    throw new IllegalStateException("duplicate ActorMapping value: " + value + " -> " + method);
+                }
+                routes[value] = resolve(lookup, configurer, method, mapping);
+            }
+        }
+        return new ActorDispatchTable(routes);
+    }
+
+
+    /**
+     * 解析 @ActorMapping 声明
+     *
+     * @param lookup     句柄查找
+     * @param configurer 处理的 Actor
+     * @param method     处理方法
+     * @param mapping    声明
+     * @return ActorMappingRoute
+     */
+    static ActorMappingRoute resolve(MethodHandles.Lookup lookup, ActorConfigurer configurer, Method method, ActorMapping mapping) {
+        long states = 0L;
+        for (int state : mapping.state()) {
+            if (state >= 0 && state < Long.SIZE) {
+                states |= 1L << state;
+            }
+        }
+
+        // 客户端请求处理方法声明为 (app, session, args), 参数直接绑定成声明的类型
+        Class<?>[] parameters = method.getParameterTypes();
+        Class<?> argsType = parameters.length == 3 ? parameters[2] : JsonNode.class;
+
+        // 绑定实例并展开数组参数, 统一成 (Object[])void 调用
+        MethodHandle invoker;
+        try {
+            invoker = lookup.unreflect(method)
+                    .bindTo(configurer)
+                    .asSpreader(Object[].class, parameters.length)
+                    .asType(MethodType.methodType(void.class, Object[].class));
+        } catch (IllegalAccessException exception) {
+            throw new IllegalStateException("ActorMapping method not accessible: " + method, exception);
+        }
+        ActorArgsError error = method.getAnnotation(ActorArgsError.class);
+        return new ActorMappingRoute(configurer, invoker, states, argsType, decoder(argsType),
+                method.isAnnotationPresent(ActorBlocking.class), error != null ? error.value() : 0);
+    }
+
+
+    /**
+     * 获取请求类型生成的解码器
+     *
+     * @param type 请求类型
+     * @return MessageDecoder|null
+     */
+    static MessageDecoder<?> decoder(Class<?> type) {
+        try {
+            Field field = type.getField(MessageDecoder.FIELD_NAME);
+            if (Modifier.isStatic(field.getModifiers()) && MessageDecoder.class.isAssignableFrom(field.getType())) {
+                return (MessageDecoder<?>) field.get(null);
+            }
+        } catch (NoSuchFieldException | IllegalAccessException ignored) {
+        }
+        return null;
+    }
+}
@@ -0,0 +1,216 @@
+package com.meteorcat.mix.core;
+
+/**
+ * 基础类型 long 作为键的哈希表
+ * 采用开放寻址线性探测, 避免查询时候 Long 装箱
+ * 注意: 本身不是线程安全, 需要由外部加锁处理
+ *
+ * @param <V> 值类型
+ */
+public class ActorLongHashMap<V> {
+
+    /**
+     * 默认容量, 必须是2的幂
+     */
+    final static int DEFAULT_CAPACITY = 16;
+
+    /**
+     * 键列表
+     */
+    long[] keys;
+
+    /**
+     * 值列表, null 代表空槽
+     */
+    Object[] values;
+
+    /**
+     * 当前数量
+     */
+    int size = 0;
+
+
+    /**
+     * 构造方法
+     */
+    public ActorLongHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+
+    /**
+     * 构造方法
+     *
+     * @param capacity 初始容量
+     */
+    public ActorLongHashMap(int capacity) {
+        int length = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, capacity) - 1) << 1;
+        this.keys = new long[length];
+        this.values = new Object[length];
+    }
+
+
+    /**
+     * 计算槽位
+     *
+     * @param key  键
+     * @param mask 掩码
+     * @return 槽位
+     */
+    static int index(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+
+    /**
+     * 获取值
+     * 即使在并发修改中读取也不会抛出异常, 只是结果可能不准确, 调用方需要自行校验
+     *
+     * @param key 键
+     * @return V|null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        if (keys.length != values.length) {
+            return null;
+        }
+
+        int mask = values.length - 1;
+        int index = index(key, mask);
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[index];
+            if (value == null) {
+                return null;
+            }
+            if (keys[index] == key) {
+                return (V) value;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+
+    /**
+     * 写入值
+     *
+     * @param key   键
+     * @param value 值, 不允许 null
+     * @return 旧值|null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value is null");
+        }
+
+        int mask = values.length - 1;
+        int index = index(key, mask);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                V old = (V) values[index];
+                values[index] = value;
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        if (++size > (values.length >> 1) + (values.length >> 2)) {
+            resize(values.length << 1);
+        }
+        return null;
+    }
+
+
+    /**
+     * 删除值
+     *
+     * @param key 键
+     * @return 旧值|null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int mask = values.length - 1;
+        int index = index(key, mask);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                V old = (V) values[index];
+                shift(index);
+                size--;
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+
+    /**
+     * 当前数量
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * 删除后向前回填探测链, 保证后续查询不会提前中断
+     *
+     * @param hole 空出的槽位
+     */
+    void shift(int hole) {
+        int mask = values.length - 1;
+        int index = hole;
+        while (true) {
+            index = (index + 1) & mask;
+            if (values[index] == null) {
+                break;
+            }
+
+            // 原始槽位不在 (hole, index] 区间内的才可以回填
+            int slot = index(keys[index], mask);
+            boolean movable = hole <= index ? (slot <= hole || slot > index) : (slot <= hole && slot > index);
+            if (movable) {
+                keys[hole] = keys[index];
+                values[hole] = values[index];
+                hole = index;
+            }
+        }
+        values[hole] = null;
+        keys[hole] = 0L;
+    }
+
+
+    /**
+     * 扩容, 新数组准备完成之后才替换引用
+     *
+     * @param length 新容量
+     */
+    void resize(int length) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        long[] newKeys = new long[length];
+        Object[] newValues = new Object[length];
+        int mask = length - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+            int index = index(oldKeys[i], mask);
+            while (newValues[index] != null) {
+                index = (index + 1) & mask;
+            }
+            newKeys[index] = oldKeys[i];
+            newValues[index] = oldValues[i];
+        }
+        values = newValues;
+        keys = newKeys;
+    }
+}
@@ -0,0 +1,164 @@
+package com.meteorcat.mix.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 玩家消息信箱
+ * 按玩家(或未登录会话)的键通过一致性哈希绑定到固定的单线程工作者, 同一个键的消息严格按顺序单线程执行
+ * 工作者数量为 0 时退化为直接在调用线程执行
+ */
+public class ActorMailbox {
+
+    /**
+     * 每个工作者在哈希环上的虚拟节点数量
+     */
+    final static int VIRTUAL_NODES = 160;
+
+    /**
+     * 日志句柄
+     */
+    final Logger logger = LoggerFactory.getLogger(ActorMailbox.class);
+
+    /**
+     * 工作者, 每个都是单线程
+     */
+    final ExecutorService[] workers;
+
+    /**
+     * 哈希环节点, 升序排列
+     */
+    final int[] ring;
+
+    /**
+     * 哈希环节点对应的工作者下标
+     */
+    final int[] owners;
+
+
+    /**
+     * 构造方法
+     *
+     * @param threads 工作者数量, 0 代表直接在调用线程执行
+     */
+    public ActorMailbox(int threads) {
+        int size = Math.max(0, threads);
+        this.workers = new ExecutorService[size];
+        for (int i = 0; i < size; i++) {
+            String name = "actor-mailbox-" + (i + 1);
+            workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        // 构建哈希环
+        long[] nodes = new long[size * VIRTUAL_NODES];
+        for (int i = 0; i < size; i++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                int hash = hash(((long) i << 32) | v);
+                nodes[i * VIRTUAL_NODES + v] = ((long) hash << 32) | i;
+            }
+        }
+        Arrays.sort(nodes);
+        this.ring = new int[nodes.length];
+        this.owners = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            ring[i] = (int) (nodes[i] >> 32);
+            owners[i] = (int) nodes[i];
+        }
+    }
+
+
+    /**
+     * 是否采用信箱派发
+     *
+     * @return boolean
+     */
+    public boolean isEnabled() {
+        return workers.length > 0;
+    }
+
+
+    /**
+     * 投递消息
+     *
+     * @param key  玩家UID或者会话键
+     * @param task 处理任务
+     */
+    public void execute(long key, Runnable task) {
+        if (workers.length == 0) {
+            run(task);
+            return;
+        }
+
+        try {
+            workers[worker(key)].execute(() -> run(task));
+        } catch (RejectedExecutionException exception) {
+            logger.warn("Mailbox rejected = {}", exception.getMessage());
+        }
+    }
+
+
+    /**
+     * 通过哈希环确定键绑定的工作者
+     *
+     * @param key 键
+     * @return 工作者下标
+     */
+    int worker(long key) {
+        int index = Arrays.binarySearch(ring, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == ring.length ? 0 : index];
+    }
+
+
+    /**
+     * 执行任务, 异常不影响工作者后续消息
+     *
+     * @param task 任务
+     */
+    void run(Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable throwable) {
+            logger.error("Mailbox task error: {}", throwable.getMessage(), throwable);
+        }
+    }
+
+
+    /**
+     * 64位混淆哈希
+     *
+     * @param key 键
+     * @return int
+     */
+    static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+
+    /**
+     * 退出信箱, 已经投递的消息会执行完成
+     */
+    public void shutdown() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+}
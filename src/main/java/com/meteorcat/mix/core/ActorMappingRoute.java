@@ -0,0 +1,68 @@
+package com.meteorcat.mix.core;
+
+import com.meteorcat.mix.core.codec.MessageDecoder;
+import com.meteorcat.mix.core.codec.MessagePacket;
+import com.meteorcat.spring.boot.starter.ActorConfigurer;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+
+/**
+ * 协议路由信息, 启动时候从 @ActorMapping 声明解析
+ *
+ * @param configurer 处理的 Actor
+ * @param invoker    预绑定 Actor 实例的调用句柄, 类型为 (Object[])void
+ * @param states     允许的会话状态掩码, 第 N 位代表状态 N
+ * @param argsType   请求参数绑定类型
+ * @param decoder    请求参数解码器, 没有生成解码器的类型为 null
+ * @param blocking   是否为阻塞处理, 参考 @ActorBlocking
+ * @param error      参数错误响应的协议值, 0 代表采用默认的参数错误, 参考 @ActorArgsError
+ */
+public record ActorMappingRoute(
+        ActorConfigurer configurer,
+        MethodHandle invoker,
+        long states,
+        Class<?> argsType,
+        MessageDecoder<?> decoder,
+        boolean blocking,
+        int error
+) {
+
+    /**
+     * 确认会话状态是否允许调用
+     *
+     * @param state 会话状态
+     * @return boolean
+     */
+    public boolean accept(int state) {
+        return state >= 0 && state < Long.SIZE && (states & (1L << state)) != 0;
+    }
+
+
+    /**
+     * 构建请求参数, 有解码器的直接从数据流绑定
+     *
+     * @param packet 请求数据
+     * @return Object
+     * @throws IOException 参数缺失或者类型不匹配
+     */
+    public Object args(MessagePacket packet) throws IOException {
+        return decoder != null ? packet.args(decoder) : packet.args(argsType);
+    }
+
+
+    /**
+     * 调用处理方法
+     *
+     * @param args 方法参数, 数量必须和声明一致
+     */
+    public void invoke(Object... args) {
+        try {
+            invoker.invokeExact(args);
+        } catch (RuntimeException | Error exception) {
+            throw exception;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+    }
+}
@@ -1,10 +1,191 @@
 package com.meteorcat.mix.core;
 
+import com.meteorcat.mix.core.codec.MessageCodec;
+import org.springframework.web.socket.WebSocketSession;
+
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Actor玩家消息队列
+ * Actor玩家消息队列 - 每个会话独立持有
+ * 入队和出队同时统计帧数和字节数, 推送器按这两个数值限制积压
  */
 public class ActorMessageQueue extends ConcurrentLinkedQueue<MessageFrame> {
 
+    /**
+     * 推送会话, 由推送器装饰之后带有发送超时
+     */
+    final WebSocketSession session;
+
+    /**
+     * 会话编解码器, 批量推送时候合并消息
+     */
+    final MessageCodec codec;
+
+    /**
+     * 推送标识, 保证同一时刻只有一个线程在推送该会话数据
+     */
+    final AtomicBoolean writing = new AtomicBoolean(false);
+
+    /**
+     * 队列深度, ConcurrentLinkedQueue.size 需要遍历所以单独计数
+     */
+    final AtomicInteger depth = new AtomicInteger();
+
+    /**
+     * 队列待推送字节数
+     */
+    final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * 已经关闭, 之后写入的数据直接丢弃
+     */
+    volatile boolean closing = false;
+
+    /**
+     * 当前帧开始推送的时间(纳秒), 0 代表没有在推送
+     */
+    volatile long sending = 0L;
+
+
+    /**
+     * 构造方法
+     *
+     * @param session 推送会话
+     * @param codec   会话编解码器
+     */
+    public ActorMessageQueue(WebSocketSession session, MessageCodec codec) {
+        this.session = session;
+        this.codec = codec;
+    }
+
+
+    @Override
+    public boolean offer(MessageFrame frame) {
+        boolean added = super.offer(frame);
+        if (added) {
+            depth.incrementAndGet();
+            bytes.addAndGet(frame.size());
+        }
+        return added;
+    }
+
+
+    @Override
+    public MessageFrame poll() {
+        MessageFrame frame = super.poll();
+        if (frame != null) {
+            depth.decrementAndGet();
+            bytes.addAndGet(-frame.size());
+        }
+        return frame;
+    }
+
+
+    @Override
+    public boolean remove(Object o) {
+        boolean removed = super.remove(o);
+        if (removed) {
+            depth.decrementAndGet();
+            bytes.addAndGet(-((MessageFrame) o).size());
+        }
+        return removed;
+    }
+
+
+    /**
+     * 清空队列, ConcurrentLinkedQueue.clear 不经过 poll 所以需要重写保证计数正确
+     */
+    @Override
+    public void clear() {
+        discard();
+    }
+
+
+    /**
+     * 清空队列
+     *
+     * @return 丢弃帧数
+     */
+    public int discard() {
+        int count = 0;
+        while (poll() != null) {
+            count++;
+        }
+        return count;
+    }
+
+
+    /**
+     * 队列深度
+     *
+     * @return int
+     */
+    public int depth() {
+        return depth.get();
+    }
+
+
+    /**
+     * 队列待推送字节数
+     *
+     * @return long
+     */
+    public long bytes() {
+        return bytes.get();
+    }
+
+
+    /**
+     * 推送会话
+     *
+     * @return WebSocketSession
+     */
+    public WebSocketSession session() {
+        return session;
+    }
+
+
+    /**
+     * 是否超出积压上限
+     *
+     * @param frames 最大帧数
+     * @param limit  最大字节数
+     * @return boolean
+     */
+    boolean exceeded(int frames, long limit) {
+        return depth.get() > frames || bytes.get() > limit;
+    }
+
+
+    /**
+     * 当前帧推送是否已经阻塞超过指定时间
+     *
+     * @param timeout 超时(纳秒)
+     * @return boolean
+     */
+    boolean stalled(long timeout) {
+        long start = sending;
+        return start != 0L && System.nanoTime() - start > timeout;
+    }
+
+
+    /**
+     * 抢占推送权限
+     *
+     * @return 抢占成功需要由调用方负责推送
+     */
+    public boolean acquire() {
+        return writing.compareAndSet(false, true);
+    }
+
+
+    /**
+     * 释放推送权限
+     */
+    public void release() {
+        writing.set(false);
+    }
 }
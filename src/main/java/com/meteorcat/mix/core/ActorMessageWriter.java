@@ -0,0 +1,535 @@
+package com.meteorcat.mix.core;
+
+import com.meteorcat.mix.core.codec.MessageCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 会话消息推送器
+ * 数据入队时候直接唤醒推送, 每次推送会把该会话队列的数据全部写出
+ * 每个会话积压按帧数和字节数限制, 超出之后按策略处理:
+ *   drop-oldest: 丢弃最早的待推送帧
+ *   coalesce: 丢弃同协议值的旧帧只保留最新数据, 没有可合并的帧时断开
+ *   disconnect: 直接断开会话
+ * 当前帧推送阻塞超过发送超时的会话无论何种策略都会断开
+ * 开启批量推送之后, 队列中连续的消息按会话编解码器合并为一帧写出, 受字节上限和等待上限约束
+ * 压缩协议的会话在推送线程压缩, 合并之后的整帧一起压缩
+ */
+public class ActorMessageWriter {
+
+    /**
+     * 积压处理策略
+     */
+    public enum Overflow {
+        DROP_OLDEST,
+        COALESCE,
+        DISCONNECT;
+
+
+        /**
+         * 配置名转换, 如 drop-oldest
+         *
+         * @param name 配置名
+         * @return Overflow
+         */
+        public static Overflow of(String name) {
+            return valueOf(name.trim().replace('-', '_').toUpperCase());
+        }
+    }
+
+    /**
+     * 单次推送最多写出帧数, 避免单个会话长期占用推送线程
+     */
+    final static int DRAIN_LIMIT = 64;
+
+    /**
+     * 日志句柄
+     */
+    final Logger logger = LoggerFactory.getLogger(ActorMessageWriter.class);
+
+    /**
+     * 推送线程池
+     */
+    final ExecutorService executor;
+
+    /**
+     * 单个会话最多积压帧数
+     */
+    final int frames;
+
+    /**
+     * 单个会话最多积压字节数
+     */
+    final long bytes;
+
+    /**
+     * 积压处理策略
+     */
+    final Overflow overflow;
+
+    /**
+     * 发送超时(毫秒)
+     */
+    final int timeout;
+
+    /**
+     * 发送超时(纳秒)
+     */
+    final long timeoutNanos;
+
+    /**
+     * 批量推送单帧字节上限, 0 代表不合并
+     */
+    final int batch;
+
+    /**
+     * 批量推送等待上限(毫秒), 首条消息入队之后最多等待这么久再推送
+     */
+    final long linger;
+
+    /**
+     * 批量等待定时器, 不需要等待时候为 null
+     */
+    final ScheduledExecutorService scheduler;
+
+    /**
+     * 入队帧数
+     */
+    final Counter enqueued;
+
+    /**
+     * 推送失败帧数
+     */
+    final Counter failed;
+
+    /**
+     * 积压超出丢弃帧数
+     */
+    final Counter dropped;
+
+    /**
+     * 积压超出或推送失败断开的会话数
+     */
+    final Counter disconnected;
+
+    /**
+     * 单帧推送耗时, 计数即为出队推送帧数
+     */
+    final Timer sent;
+
+    /**
+     * 每次推送开始时候的会话队列深度
+     */
+    final DistributionSummary depth;
+
+    /**
+     * 批量推送每帧合并的消息数
+     */
+    final DistributionSummary batched;
+
+
+    /**
+     * 构造方法
+     *
+     * @param threads  推送线程数
+     * @param frames   单个会话最多积压帧数
+     * @param bytes    单个会话最多积压字节数
+     * @param overflow 积压处理策略
+     * @param timeout  发送超时(毫秒)
+     * @param batch    批量推送单帧字节上限, 0 代表不合并
+     * @param linger   批量推送等待上限(毫秒)
+     * @param registry 监控指标
+     */
+    public ActorMessageWriter(int threads, int frames, long bytes, Overflow overflow, int timeout,
+                              int batch, long linger, MeterRegistry registry) {
+        this.batch = batch;
+        this.linger = batch > 0 ? linger : 0L;
+        this.frames = frames;
+        this.bytes = bytes;
+        this.overflow = overflow;
+        this.timeout = timeout;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.enqueued = Counter.builder("actor.writer.enqueued")
+                .description("会话队列入队帧数")
+                .register(registry);
+        this.failed = Counter.builder("actor.writer.failed")
+                .description("会话推送失败帧数")
+                .register(registry);
+        this.dropped = Counter.builder("actor.writer.dropped")
+                .description("会话积压超出丢弃帧数")
+                .tag("overflow", overflow.name())
+                .register(registry);
+        this.disconnected = Counter.builder("actor.writer.disconnected")
+                .description("积压超出或推送失败断开的会话数")
+                .register(registry);
+        this.sent = Timer.builder("actor.writer.sent")
+                .description("会话单帧推送耗时")
+                .register(registry);
+        this.depth = DistributionSummary.builder("actor.writer.drain.depth")
+                .description("推送开始时候的会话队列深度")
+                .register(registry);
+        this.batched = DistributionSummary.builder("actor.writer.batched")
+                .description("批量推送每帧合并的消息数")
+                .register(registry);
+
+        AtomicInteger index = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "actor-writer-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler = this.linger <= 0 ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "actor-writer-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * 创建会话队列, 会话采用 ConcurrentWebSocketSessionDecorator 装饰
+     * 推送本身由队列保证单线程, 装饰之后断开时候的关闭帧可以和阻塞中的推送并发, 并且沿用相同的发送超时
+     *
+     * @param session 会话
+     * @param codec   会话编解码器
+     * @return ActorMessageQueue
+     */
+    public ActorMessageQueue open(WebSocketSession session, MessageCodec codec) {
+        int limit = (int) Math.min(bytes, Integer.MAX_VALUE);
+        return new ActorMessageQueue(new ConcurrentWebSocketSessionDecorator(
+                session, timeout, limit, ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE), codec);
+    }
+
+
+    /**
+     * 写入会话队列并唤醒推送
+     *
+     * @param queue 会话队列
+     * @param frame 消息帧
+     */
+    public void write(ActorMessageQueue queue, MessageFrame frame) {
+        if (queue.closing) {
+            return;
+        }
+        if (frame.message() == null) {
+            queue.closing = true;
+        }
+
+        queue.add(frame);
+        enqueued.increment();
+        if (queue.exceeded(frames, bytes)) {
+            overflow(queue, frame);
+        }
+        wakeup(queue, linger);
+    }
+
+
+    /**
+     * 积压超出处理
+     *
+     * @param queue 会话队列
+     * @param frame 最新写入的消息帧
+     */
+    void overflow(ActorMessageQueue queue, MessageFrame frame) {
+        if (overflow == Overflow.DISCONNECT || queue.stalled(timeoutNanos)) {
+            disconnect(queue, "overflow");
+            return;
+        }
+
+        // 多个线程同时超出只需要一个线程处理, 推送线程出队不受影响
+        synchronized (queue) {
+            if (overflow == Overflow.COALESCE) {
+                if (!coalesce(queue, frame)) {
+                    disconnect(queue, "overflow");
+                }
+                return;
+            }
+
+            // 最新写入的帧和关闭帧保留, 单帧超出字节上限时候也会保留
+            while (queue.exceeded(frames, bytes)) {
+                MessageFrame oldest = queue.peek();
+                if (oldest == null || oldest == frame || oldest.message() == null) {
+                    break;
+                }
+                if (queue.remove(oldest)) {
+                    dropped.increment();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * 丢弃同协议值的旧帧, 直到积压回到上限之内
+     *
+     * @param queue 会话队列
+     * @param frame 最新写入的消息帧
+     * @return 积压是否回到上限之内
+     */
+    boolean coalesce(ActorMessageQueue queue, MessageFrame frame) {
+        if (frame.value() == MessageFrame.NONE) {
+            return !queue.exceeded(frames, bytes);
+        }
+
+        for (MessageFrame current : queue) {
+            if (!queue.exceeded(frames, bytes)) {
+                return true;
+            }
+            if (current != frame && current.value() == frame.value() && queue.remove(current)) {
+                dropped.increment();
+            }
+        }
+        return !queue.exceeded(frames, bytes);
+    }
+
+
+    /**
+     * 丢弃全部积压并断开会话, 关闭交给推送线程处理, 避免阻塞写入方
+     *
+     * @param queue  会话队列
+     * @param reason 断开原因
+     */
+    void disconnect(ActorMessageQueue queue, String reason) {
+        queue.closing = true;
+        dropped.increment(queue.discard());
+        WebSocketSession session = queue.session;
+        if (!session.isOpen()) {
+            return;
+        }
+
+        logger.warn("Disconnect = {}, {}", session.getId(), reason);
+        try {
+            executor.execute(() -> close(session));
+        } catch (RejectedExecutionException exception) {
+            logger.warn("Writer rejected = {}", exception.getMessage());
+        }
+    }
+
+
+    /**
+     * 按不可靠会话关闭
+     *
+     * @param session 会话
+     */
+    void close(WebSocketSession session) {
+        if (!session.isOpen()) {
+            return;
+        }
+        disconnected.increment();
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (IOException | RuntimeException exception) {
+            logger.warn(exception.getMessage());
+        }
+    }
+
+
+    /**
+     * 如果没有线程在推送该队列则提交推送任务
+     *
+     * @param queue 会话队列
+     * @param delay 批量等待时间(毫秒), 0 代表立即推送
+     */
+    void wakeup(ActorMessageQueue queue, long delay) {
+        if (!queue.acquire()) {
+            return;
+        }
+
+        try {
+            if (delay > 0) {
+                scheduler.schedule(() -> submit(queue), delay, TimeUnit.MILLISECONDS);
+            } else {
+                executor.execute(() -> drain(queue));
+            }
+        } catch (RejectedExecutionException exception) {
+            // 服务已经退出, 直接放弃推送
+            queue.release();
+            logger.warn("Writer rejected = {}", exception.getMessage());
+        }
+    }
+
+
+    /**
+     * 批量等待结束之后提交推送任务, 推送权限已经在等待前抢占
+     *
+     * @param queue 会话队列
+     */
+    void submit(ActorMessageQueue queue) {
+        try {
+            executor.execute(() -> drain(queue));
+        } catch (RejectedExecutionException exception) {
+            queue.release();
+            logger.warn("Writer rejected = {}", exception.getMessage());
+        }
+    }
+
+
+    /**
+     * 写出会话队列待推送数据
+     *
+     * @param queue 会话队列
+     */
+    void drain(ActorMessageQueue queue) {
+        depth.record(queue.depth());
+        try {
+            if (batch > 0) {
+                drainBatch(queue);
+            } else {
+                int count = 0;
+                MessageFrame frame;
+                while (count < DRAIN_LIMIT && (frame = queue.poll()) != null) {
+                    send(queue, frame);
+                    count++;
+                }
+            }
+        } finally {
+            // 释放之后需要再次确认, 防止释放前瞬间写入的数据没人推送
+            queue.release();
+        }
+        if (!queue.isEmpty()) {
+            wakeup(queue, 0L);
+        }
+    }
+
+
+    /**
+     * 合并写出会话队列待推送数据, 关闭帧和超出字节上限的消息单独成帧
+     *
+     * @param queue 会话队列
+     */
+    void drainBatch(ActorMessageQueue queue) {
+        List<MessageFrame> group = new ArrayList<>();
+        List<WebSocketMessage<?>> messages = new ArrayList<>();
+        int count = 0;
+        MessageFrame frame = null;
+
+        // 已经出队但是没有合并进去的消息必须推送, 不受单次推送帧数限制
+        while (frame != null || (count < DRAIN_LIMIT && (frame = queue.poll()) != null)) {
+            if (frame.message() == null) {
+                send(queue, frame);
+                frame = null;
+                count++;
+                continue;
+            }
+
+            int size = frame.size();
+            group.add(frame);
+            messages.add(frame.message());
+            while ((frame = queue.poll()) != null && frame.message() != null
+                    && group.size() < DRAIN_LIMIT && size + frame.size() <= batch) {
+                size += frame.size();
+                group.add(frame);
+                messages.add(frame.message());
+            }
+
+            if (send(queue, group.size() == 1 ? messages.get(0) : queue.codec.batch(messages), group)) {
+                batched.record(group.size());
+            }
+            group.clear();
+            messages.clear();
+            count++;
+        }
+    }
+
+
+    /**
+     * 推送单帧数据, 推送失败直接断开会话
+     *
+     * @param queue 会话队列
+     * @param frame 消息帧
+     */
+    void send(ActorMessageQueue queue, MessageFrame frame) {
+        long start = System.nanoTime();
+        if (send(queue, frame.message(), start) && frame.trace() != null) {
+            frame.trace().written(start, System.nanoTime());
+        }
+    }
+
+
+    /**
+     * 推送合并之后的数据, 逐条记录采样跟踪
+     *
+     * @param queue 会话队列
+     * @param data  合并之后的数据
+     * @param group 合并的消息帧
+     * @return 推送失败或者会话已经关闭返回 false
+     */
+    boolean send(ActorMessageQueue queue, WebSocketMessage<?> data, List<MessageFrame> group) {
+        long start = System.nanoTime();
+        if (!send(queue, data, start)) {
+            return false;
+        }
+
+        long end = System.nanoTime();
+        for (MessageFrame frame : group) {
+            if (frame.trace() != null) {
+                frame.trace().written(start, end);
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * 推送数据, 推送失败直接断开会话
+     *
+     * @param queue 会话队列
+     * @param data  推送数据, null 代表关闭
+     * @param start 开始时间
+     * @return 推送失败或者会话已经关闭返回 false, 失败的推送不计入推送耗时
+     */
+    boolean send(ActorMessageQueue queue, WebSocketMessage<?> data, long start) {
+        // 获取会话,关闭跳过
+        WebSocketSession session = queue.session;
+        if (!session.isOpen()) {
+            return false;
+        }
+
+        queue.sending = start;
+        try {
+            if (data != null) {
+                session.sendMessage(queue.codec.compress(data));
+            } else {
+                session.close();
+            }
+        } catch (IOException | RuntimeException exception) {
+            // SessionLimitExceededException 等运行时异常同样视为推送失败
+            failed.increment();
+            disconnect(queue, exception.getMessage());
+            return false;
+        } finally {
+            queue.sending = 0L;
+        }
+        sent.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+
+    /**
+     * 退出推送服务
+     */
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        executor.shutdown();
+    }
+}
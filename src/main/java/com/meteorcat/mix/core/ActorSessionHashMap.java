@@ -5,7 +5,7 @@ import org.springframework.web.socket.WebSocketSession;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Actor 状态哈希表
+ * 会话上下文哈希表
  */
-public class ActorStateHashMap extends ConcurrentHashMap<WebSocketSession, Integer> {
+public class ActorSessionHashMap extends ConcurrentHashMap<WebSocketSession, SessionContext> {
 }
@@ -0,0 +1,79 @@
+package com.meteorcat.mix.core;
+
+/**
+ * 会话定时信息, 记录最后收到数据的时间和挂载的定时任务
+ */
+public class ActorSessionTimer {
+
+    /**
+     * 最后收到客户端数据的时间
+     */
+    volatile long inbound = System.currentTimeMillis();
+
+    /**
+     * 空闲检测任务
+     */
+    volatile ActorTimingWheel.Timeout idle = null;
+
+    /**
+     * 心跳推送任务
+     */
+    volatile ActorTimingWheel.Timeout heartbeat = null;
+
+
+    /**
+     * 刷新最后收到数据的时间
+     */
+    public void touch() {
+        inbound = System.currentTimeMillis();
+    }
+
+
+    /**
+     * 最后收到数据的时间
+     *
+     * @return long
+     */
+    public long getInbound() {
+        return inbound;
+    }
+
+
+    /**
+     * 替换空闲检测任务
+     *
+     * @param timeout 任务
+     */
+    public void setIdle(ActorTimingWheel.Timeout timeout) {
+        idle = timeout;
+    }
+
+
+    /**
+     * 替换心跳推送任务, 旧任务会被取消
+     *
+     * @param timeout 任务
+     */
+    public void setHeartbeat(ActorTimingWheel.Timeout timeout) {
+        ActorTimingWheel.Timeout previous = heartbeat;
+        heartbeat = timeout;
+        if (previous != null && previous != timeout) {
+            previous.cancel();
+        }
+    }
+
+
+    /**
+     * 取消所有任务
+     */
+    public void cancel() {
+        ActorTimingWheel.Timeout timeout = idle;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        timeout = heartbeat;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.meteorcat.mix.core;
+
+import com.meteorcat.spring.boot.starter.ActorEventContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 哈希时间轮
+ * 任务按到期刻度挂到对应槽位的双向链表, 添加和取消都是 O(1), 只依赖 Actor 运行时的单个定时任务推进
+ * 添加和取消可以在任意线程调用, 槽位链表只由推进线程修改
+ */
+public class ActorTimingWheel {
+
+    /**
+     * 单次推进最多转移的新任务数量, 避免新任务过多阻塞到期任务执行
+     */
+    final static int TRANSFER_LIMIT = 100000;
+
+    /**
+     * 日志句柄
+     */
+    final Logger logger = LoggerFactory.getLogger(ActorTimingWheel.class);
+
+    /**
+     * 刻度时长(毫秒)
+     */
+    final long tickDuration;
+
+    /**
+     * 槽位掩码
+     */
+    final int mask;
+
+    /**
+     * 槽位
+     */
+    final Bucket[] buckets;
+
+    /**
+     * 等待挂载的新任务
+     */
+    final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 等待移除的取消任务
+     */
+    final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 启动时间
+     */
+    final long startTime = System.currentTimeMillis();
+
+    /**
+     * 当前刻度, 只由推进线程修改
+     */
+    long tick = 0L;
+
+    /**
+     * 推进任务
+     */
+    ScheduledFuture<?> future = null;
+
+
+    /**
+     * 构造方法
+     *
+     * @param tickDuration 刻度时长(毫秒)
+     * @param wheelSize    槽位数量, 会调整为2的幂
+     */
+    public ActorTimingWheel(long tickDuration, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.tickDuration = Math.max(1L, tickDuration);
+        this.mask = size - 1;
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+
+    /**
+     * 挂载到 Actor 运行时定时推进
+     *
+     * @param container Actor 运行时
+     */
+    public void start(ActorEventContainer container) {
+        future = container.scheduleAtFixedRate(this::tick, tickDuration, tickDuration, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * 停止推进
+     */
+    public void stop() {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+
+    /**
+     * 添加延时任务
+     *
+     * @param task  任务, 在推进线程执行, 不要做阻塞处理
+     * @param delay 延时
+     * @param unit  时间单位
+     * @return Timeout
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task, System.currentTimeMillis() + unit.toMillis(delay));
+        pending.add(timeout);
+        return timeout;
+    }
+
+
+    /**
+     * 推进时间轮, 调度延迟时候会补齐落后的刻度
+     */
+    public void tick() {
+        long target = (System.currentTimeMillis() - startTime) / tickDuration;
+        while (tick <= target) {
+            transfer();
+            purge();
+            buckets[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+
+    /**
+     * 新任务挂载到槽位
+     */
+    void transfer() {
+        for (int i = 0; i < TRANSFER_LIMIT; i++) {
+            Timeout timeout = pending.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.state.get() != Timeout.PENDING) {
+                continue;
+            }
+
+            // 已经过期的任务挂到当前刻度立即执行
+            long ticks = Math.max((timeout.deadline - startTime) / tickDuration, tick);
+            timeout.rounds = (ticks - tick) / buckets.length;
+            buckets[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+
+    /**
+     * 从槽位移除取消的任务
+     */
+    void purge() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+
+    /**
+     * 执行任务
+     *
+     * @param timeout 到期任务
+     */
+    void run(Timeout timeout) {
+        try {
+            timeout.task.run();
+        } catch (Throwable throwable) {
+            logger.warn("Timer task error: {}", throwable.getMessage(), throwable);
+        }
+    }
+
+
+    /**
+     * 延时任务句柄
+     */
+    public static final class Timeout {
+
+        final static int PENDING = 0;
+
+        final static int CANCELLED = 1;
+
+        final static int EXPIRED = 2;
+
+        final ActorTimingWheel wheel;
+
+        final Runnable task;
+
+        final long deadline;
+
+        final AtomicInteger state = new AtomicInteger(PENDING);
+
+        /**
+         * 剩余轮数, 只由推进线程读写
+         */
+        long rounds;
+
+        Bucket bucket;
+
+        Timeout prev;
+
+        Timeout next;
+
+        Timeout(ActorTimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+
+        /**
+         * 取消任务
+         *
+         * @return 是否取消成功, 已经执行的任务返回 false
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+
+        /**
+         * 是否已经取消
+         *
+         * @return boolean
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+    }
+
+
+    /**
+     * 槽位双向链表
+     */
+    final class Bucket {
+
+        Timeout head;
+
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.rounds <= 0) {
+                    remove(timeout);
+                    if (timeout.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) {
+                        run(timeout);
+                    }
+                } else if (timeout.state.get() == Timeout.CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
@@ -1,12 +1,110 @@
 package com.meteorcat.mix.core;
 
-import org.springframework.web.socket.WebSocketSession;
-
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
 
 
 /**
  * 玩家信息哈希表
+ * UID -> 会话上下文索引, 会话 -> UID 直接记录在会话上下文, 写入操作加锁保证两边同步更新
  */
-public class ActorUserHashMap extends ConcurrentHashMap<WebSocketSession, Long> {
+public class ActorUserHashMap {
+
+    /**
+     * UID -> 会话上下文
+     */
+    final ActorLongHashMap<SessionContext> uids = new ActorLongHashMap<>();
+
+    /**
+     * 双向索引写锁, 读取 UID 索引采用乐观读
+     */
+    final StampedLock lock = new StampedLock();
+
+
+    /**
+     * 绑定会话和UID, 如果UID已经绑定其他会话则替换并返回旧会话
+     *
+     * @param context 会话上下文
+     * @param uid     玩家ID
+     * @return 被顶替的会话上下文|null
+     */
+    public SessionContext put(SessionContext context, long uid) {
+        long stamp = lock.writeLock();
+        try {
+            // 会话之前绑定过其他UID需要清理
+            Long previous = context.uid;
+            context.uid = uid;
+            if (previous != null && previous != uid && uids.get(previous) == context) {
+                uids.remove(previous);
+            }
+
+            // 顶替旧会话
+            SessionContext other = uids.put(uid, context);
+            if (other == null || other == context) {
+                return null;
+            }
+            Long bound = other.uid;
+            if (bound != null && bound == uid) {
+                other.uid = null;
+            }
+            return other;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+
+    /**
+     * 获取UID绑定的会话
+     *
+     * @param uid 玩家ID
+     * @return SessionContext|null
+     */
+    public SessionContext get(long uid) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            SessionContext context = uids.get(uid);
+            if (lock.validate(stamp)) {
+                return context;
+            }
+        }
+
+        // 乐观读期间有写入, 退化为读锁
+        stamp = lock.readLock();
+        try {
+            return uids.get(uid);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+
+    /**
+     * 解除会话绑定, UID 只有仍然指向该会话时才会清理
+     *
+     * @param context 会话上下文
+     * @return 解除的UID|null
+     */
+    public Long remove(SessionContext context) {
+        long stamp = lock.writeLock();
+        try {
+            Long uid = context.uid;
+            context.uid = null;
+            if (uid != null && uids.get(uid) == context) {
+                uids.remove(uid);
+            }
+            return uid;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+
+    /**
+     * 在线绑定数量
+     *
+     * @return int
+     */
+    public int size() {
+        return uids.size();
+    }
 }
@@ -1,24 +1,55 @@
 package com.meteorcat.mix.core;
 
+import com.meteorcat.mix.core.trace.FrameTrace;
 import org.springframework.lang.NonNull;
-import org.springframework.web.socket.TextMessage;
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.util.Optional;
-
 /**
  * 消息推送帧
  *
- * @param session
- * @param message
+ * @param session 会话
+ * @param value   响应协议值, 用于积压时候合并同协议数据, NONE 代表未知
+ * @param message 推送数据, null 代表关闭会话
+ * @param trace   采样跟踪的请求, 写出完成时候记录耗时
  */
-public record MessageFrame(@NonNull WebSocketSession session, @NonNull Optional<TextMessage> message) {
+public record MessageFrame(@NonNull WebSocketSession session, int value, @Nullable WebSocketMessage<?> message,
+                           @Nullable FrameTrace trace) {
+
+    /**
+     * 未知协议值, 不参与合并
+     */
+    public final static int NONE = -1;
+
+
+    /**
+     * 不需要跟踪的推送帧
+     *
+     * @param session 会话
+     * @param value   响应协议值
+     * @param message 推送数据, null 代表关闭会话
+     */
+    public MessageFrame(@NonNull WebSocketSession session, int value, @Nullable WebSocketMessage<?> message) {
+        this(session, value, message, null);
+    }
+
+
+    /**
+     * 推送数据字节数, 关闭帧为 0
+     *
+     * @return int
+     */
+    public int size() {
+        return message != null ? message.getPayloadLength() : 0;
+    }
 
 
     @Override
     public String toString() {
         return "MessageFrame{" +
                 "session=" + session +
+                ", value=" + value +
                 ", message=" + message +
                 '}';
     }
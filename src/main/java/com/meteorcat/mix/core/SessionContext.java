@@ -0,0 +1,229 @@
+package com.meteorcat.mix.core;
+
+import com.meteorcat.mix.core.codec.MessageCodec;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+
+/**
+ * 会话上下文, 握手完成时候创建一次
+ * 会话状态, 玩家ID, 推送队列和定时信息都挂在这里, 每帧只需要查找一次
+ */
+public class SessionContext {
+
+    /**
+     * 会话
+     */
+    final WebSocketSession session;
+
+    /**
+     * 推送队列, 同时持有会话编解码器
+     */
+    final ActorMessageQueue queue;
+
+    /**
+     * 会话定时信息
+     */
+    final ActorSessionTimer timer = new ActorSessionTimer();
+
+    /**
+     * 会话状态, 参考 ActorStatus
+     */
+    volatile int state;
+
+    /**
+     * 绑定的玩家ID, 只能由 ActorUserHashMap 在索引锁内修改
+     */
+    volatile Long uid = null;
+
+    /**
+     * 收到的请求帧数, 只有会话接收线程写入
+     */
+    volatile long received = 0L;
+
+    /**
+     * 信箱键, 会话存续期间不变
+     */
+    final long key;
+
+    /**
+     * 阻塞处理进行中, 通过 deferred 加锁读写
+     */
+    boolean blocked = false;
+
+    /**
+     * 阻塞处理期间收到的请求, 完成之后按顺序执行
+     */
+    final ArrayDeque<Runnable> deferred = new ArrayDeque<>();
+
+
+    /**
+     * 构造方法
+     *
+     * @param session 会话
+     * @param queue   推送队列
+     * @param state   初始状态
+     */
+    public SessionContext(WebSocketSession session, ActorMessageQueue queue, int state) {
+        this.session = session;
+        this.queue = queue;
+        this.state = state;
+        this.key = session.getId().hashCode();
+    }
+
+
+    /**
+     * 会话
+     *
+     * @return WebSocketSession
+     */
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+
+    /**
+     * 推送队列
+     *
+     * @return ActorMessageQueue
+     */
+    public ActorMessageQueue getQueue() {
+        return queue;
+    }
+
+
+    /**
+     * 会话编解码器
+     *
+     * @return MessageCodec
+     */
+    public MessageCodec getCodec() {
+        return queue.codec;
+    }
+
+
+    /**
+     * 会话定时信息
+     *
+     * @return ActorSessionTimer
+     */
+    public ActorSessionTimer getTimer() {
+        return timer;
+    }
+
+
+    /**
+     * 会话状态
+     *
+     * @return int
+     */
+    public int getState() {
+        return state;
+    }
+
+
+    /**
+     * 切换会话状态
+     *
+     * @param state 状态
+     */
+    public void setState(int state) {
+        this.state = state;
+    }
+
+
+    /**
+     * 绑定的玩家ID
+     *
+     * @return Long|null
+     */
+    public Long getUid() {
+        return uid;
+    }
+
+
+    /**
+     * 收到请求, 刷新空闲时间并计数
+     */
+    public void touch() {
+        timer.touch();
+        received++;
+    }
+
+
+    /**
+     * 收到的请求帧数
+     *
+     * @return long
+     */
+    public long getReceived() {
+        return received;
+    }
+
+
+    /**
+     * 信箱键, 采用会话ID并且整个会话期间不变, 登录前后的请求都在同一个信箱顺序执行
+     * 玩家相关的内部调用和阻塞回调通过玩家目前绑定的会话找到这个键
+     *
+     * @return long
+     */
+    public long key() {
+        return key;
+    }
+
+
+    /**
+     * 在会话信箱执行请求, 阻塞处理进行中则排队等待完成
+     *
+     * @param task 请求处理
+     */
+    public void run(Runnable task) {
+        synchronized (deferred) {
+            if (blocked) {
+                deferred.add(task);
+                return;
+            }
+        }
+        task.run();
+    }
+
+
+    /**
+     * 开始阻塞处理, 之后的请求排队
+     */
+    public void block() {
+        synchronized (deferred) {
+            blocked = true;
+        }
+    }
+
+
+    /**
+     * 阻塞处理完成, 在会话信箱按顺序执行排队的请求, 遇到新的阻塞处理则停止
+     */
+    public void unblock() {
+        synchronized (deferred) {
+            blocked = false;
+        }
+        while (true) {
+            Runnable next;
+            synchronized (deferred) {
+                if (blocked || (next = deferred.poll()) == null) {
+                    return;
+                }
+            }
+            next.run();
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return "SessionContext{" +
+                "session=" + session.getId() +
+                ", state=" + state +
+                ", uid=" + uid +
+                ", received=" + received +
+                '}';
+    }
+}
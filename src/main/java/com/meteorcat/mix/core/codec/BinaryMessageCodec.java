@@ -0,0 +1,223 @@
+package com.meteorcat.mix.core.codec;
+
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 二进制协议
+ * 数据格式: [varint 协议值][varint 数据长度][CBOR 数据]
+ * 数据长度为 0 代表没有参数
+ * 批量推送直接把多个数据帧首尾相接, 客户端循环读取直到数据结束
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    /**
+     * 子协议名称
+     */
+    public final static String PROTOCOL = "binary";
+
+    /**
+     * varint 最大字节数
+     */
+    final static int VARINT_MAX_BYTES = 5;
+
+    /**
+     * CBOR 解析器
+     */
+    final CBORMapper mapper;
+
+    /**
+     * 线程编码缓冲区
+     */
+    final ThreadLocal<MessageBuffer> buffers = ThreadLocal.withInitial(MessageBuffer::new);
+
+    /**
+     * 没有参数的响应编码结果
+     */
+    final AtomicReferenceArray<byte[]> constants = new AtomicReferenceArray<>(CONSTANT_LIMIT);
+
+
+    /**
+     * 构造方法
+     *
+     * @param mapper CBOR 解析器
+     */
+    public BinaryMessageCodec(CBORMapper mapper) {
+        this.mapper = mapper;
+    }
+
+
+    @Override
+    public String getProtocol() {
+        return PROTOCOL;
+    }
+
+
+    @Override
+    public boolean supports(WebSocketMessage<?> message) {
+        return message instanceof BinaryMessage;
+    }
+
+
+    @Override
+    public MessagePacket decode(WebSocketMessage<?> message, int state, MessageFilter filter) throws IOException {
+        if (!(message instanceof BinaryMessage binary)) {
+            return null;
+        }
+
+        // 头部: 协议值, 拿到之后立即确认是否需要处理
+        ByteBuffer buffer = binary.getPayload().duplicate();
+        int value = readVarint(buffer);
+        if (value < 0 || !filter.accept(value, state)) {
+            return null;
+        }
+
+        // 头部: 数据长度
+        int length = readVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            return null;
+        }
+
+        // 数据体只复制不解析, 容器的接收缓冲区在回调结束之后会被复用
+        if (length == 0) {
+            return new MessagePacket(mapper, value, (byte[]) null, 0, 0);
+        }
+        byte[] body = new byte[length];
+        buffer.get(body);
+        return new MessagePacket(mapper, value, body, 0, length);
+    }
+
+
+    @Override
+    public WebSocketMessage<?> encode(int value) throws IOException {
+        if (value < 0 || value >= CONSTANT_LIMIT) {
+            return encode(value, null);
+        }
+
+        // 缓冲区会被推送消费, 所以只缓存编码结果每次重新包装
+        byte[] data = constants.get(value);
+        if (data == null) {
+            data = frame(value, null);
+            constants.set(value, data);
+        }
+        return new BinaryMessage(data);
+    }
+
+
+    @Override
+    public WebSocketMessage<?> encode(int value, Object args) throws IOException {
+        return new BinaryMessage(frame(value, args));
+    }
+
+
+    @Override
+    public WebSocketMessage<?> share(WebSocketMessage<?> message) {
+        // 共享底层数据, 只复制缓冲区读取位置
+        if (message instanceof BinaryMessage binary) {
+            return new BinaryMessage(binary.getPayload().duplicate(), binary.isLast());
+        }
+        return message;
+    }
+
+
+    @Override
+    public WebSocketMessage<?> batch(List<WebSocketMessage<?>> messages) {
+        int length = 0;
+        for (WebSocketMessage<?> message : messages) {
+            length += message.getPayloadLength();
+        }
+
+        // 数据帧自带长度, 首尾相接即可区分
+        ByteBuffer data = ByteBuffer.allocate(length);
+        for (WebSocketMessage<?> message : messages) {
+            data.put(((BinaryMessage) message).getPayload().duplicate());
+        }
+        return new BinaryMessage(data.flip());
+    }
+
+
+    /**
+     * 编码完整数据帧
+     *
+     * @param value 协议值
+     * @param args  参数
+     * @return byte[]
+     * @throws IOException Error
+     */
+    byte[] frame(int value, Object args) throws IOException {
+        // 数据体先写入线程缓冲区, 确定长度之后一次性拷贝到最终数组
+        MessageBuffer buffer = MessageBuffer.acquire(buffers);
+        if (args != null) {
+            mapper.writeValue(buffer, args);
+        }
+
+        int length = buffer.size();
+        byte[] data = new byte[varintSize(value) + varintSize(length) + length];
+        int offset = writeVarint(data, 0, value);
+        offset = writeVarint(data, offset, length);
+        buffer.copyTo(data, offset);
+        return data;
+    }
+
+
+    /**
+     * 读取无符号 varint
+     *
+     * @param buffer 数据
+     * @return 数值, 格式错误返回 -1
+     */
+    public static int readVarint(ByteBuffer buffer) {
+        int result = 0;
+        for (int shift = 0; shift < VARINT_MAX_BYTES * 7; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            byte b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * 写入无符号 varint
+     *
+     * @param target 目标数组
+     * @param offset 写入位置
+     * @param value  数值
+     * @return 写入之后的位置
+     */
+    public static int writeVarint(byte[] target, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[offset++] = (byte) value;
+        return offset;
+    }
+
+
+    /**
+     * 计算 varint 占用字节数
+     *
+     * @param value 数值
+     * @return int
+     */
+    public static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,89 @@
+package com.meteorcat.mix.core.codec;
+
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 压缩协议, 在原有编解码器基础上对超过阈值的推送消息压缩
+ * 子协议名称为原协议加 .deflate 后缀, 如 json.deflate, binary.deflate
+ * 请求数据不压缩, 直接按原协议解码
+ */
+public class DeflateMessageCodec implements MessageCodec {
+
+    /**
+     * 子协议后缀
+     */
+    public final static String SUFFIX = ".deflate";
+
+    /**
+     * 原有编解码器
+     */
+    final MessageCodec codec;
+
+    /**
+     * 消息压缩器
+     */
+    final MessageDeflater deflater;
+
+
+    /**
+     * 构造方法
+     *
+     * @param codec    原有编解码器
+     * @param deflater 消息压缩器
+     */
+    public DeflateMessageCodec(MessageCodec codec, MessageDeflater deflater) {
+        this.codec = codec;
+        this.deflater = deflater;
+    }
+
+
+    @Override
+    public String getProtocol() {
+        return codec.getProtocol() + SUFFIX;
+    }
+
+
+    @Override
+    public boolean supports(WebSocketMessage<?> message) {
+        return codec.supports(message);
+    }
+
+
+    @Override
+    public MessagePacket decode(WebSocketMessage<?> message, int state, MessageFilter filter) throws IOException {
+        return codec.decode(message, state, filter);
+    }
+
+
+    @Override
+    public WebSocketMessage<?> encode(int value) throws IOException {
+        return codec.encode(value);
+    }
+
+
+    @Override
+    public WebSocketMessage<?> encode(int value, Object args) throws IOException {
+        return codec.encode(value, args);
+    }
+
+
+    @Override
+    public WebSocketMessage<?> share(WebSocketMessage<?> message) {
+        return codec.share(message);
+    }
+
+
+    @Override
+    public WebSocketMessage<?> batch(List<WebSocketMessage<?>> messages) {
+        return codec.batch(messages);
+    }
+
+
+    @Override
+    public WebSocketMessage<?> compress(WebSocketMessage<?> message) {
+        return deflater.compress(message);
+    }
+}
@@ -0,0 +1,189 @@
+package com.meteorcat.mix.core.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * JSON 文本协议
+ * 数据格式: { "value": 100, "args": { data.... } }
+ * 解码采用流式读取, 先拿到 value 确认需要处理之后才构建 args
+ * 批量推送格式: [{ "value": 100, "args": {...} }, { "value": 101, "args": {...} }]
+ */
+public class JsonMessageCodec implements MessageCodec {
+
+    /**
+     * 子协议名称
+     */
+    public final static String PROTOCOL = "json";
+
+    /**
+     * 协议值字段
+     */
+    final static String VALUE_NAME = "value";
+
+    /**
+     * 参数字段
+     */
+    final static String ARGS_NAME = "args";
+
+    /**
+     * 预编码协议值字段
+     */
+    final static SerializableString VALUE_FIELD = new SerializedString(VALUE_NAME);
+
+    /**
+     * 预编码参数字段
+     */
+    final static SerializableString ARGS_FIELD = new SerializedString(ARGS_NAME);
+
+    /**
+     * Json 解析器
+     */
+    final ObjectMapper mapper;
+
+    /**
+     * 线程编码缓冲区
+     */
+    final ThreadLocal<MessageBuffer> buffers = ThreadLocal.withInitial(MessageBuffer::new);
+
+    /**
+     * 没有参数的响应, 编码之后不可变可以直接复用
+     */
+    final AtomicReferenceArray<TextMessage> constants = new AtomicReferenceArray<>(CONSTANT_LIMIT);
+
+
+    /**
+     * 构造方法
+     *
+     * @param mapper Json 解析器
+     */
+    public JsonMessageCodec(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+
+    @Override
+    public String getProtocol() {
+        return PROTOCOL;
+    }
+
+
+    @Override
+    public boolean supports(WebSocketMessage<?> message) {
+        return message instanceof TextMessage;
+    }
+
+
+    @Override
+    public MessagePacket decode(WebSocketMessage<?> message, int state, MessageFilter filter) throws IOException {
+        if (!(message instanceof TextMessage text)) {
+            return null;
+        }
+
+        // json: { "value": 100, args:{ data.... } }
+        // 直接解析原始字符串, 不再复制成字节数组
+        String data = text.getPayload();
+        int value = 0;
+        boolean found = false;
+        int offset = 0;
+        int length = 0;
+        try (JsonParser parser = mapper.getFactory().createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (VALUE_NAME.equals(name)) {
+                    // json.value, 拿到之后立即确认是否需要处理
+                    if (token != JsonToken.VALUE_NUMBER_INT || parser.getNumberType() != JsonParser.NumberType.INT) {
+                        return null;
+                    }
+                    value = parser.getIntValue();
+                    if (!filter.accept(value, state)) {
+                        return null;
+                    }
+                    found = true;
+                } else if (ARGS_NAME.equals(name) && token == JsonToken.START_OBJECT) {
+                    // json.args, 只记录区间不构建
+                    offset = (int) parser.getTokenLocation().getCharOffset();
+                    parser.skipChildren();
+                    length = (int) parser.getCurrentLocation().getCharOffset() - offset;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return found ? new MessagePacket(mapper, value, data, offset, length) : null;
+    }
+
+
+    @Override
+    public WebSocketMessage<?> encode(int value) throws IOException {
+        if (value < 0 || value >= CONSTANT_LIMIT) {
+            return encode(value, null);
+        }
+
+        TextMessage message = constants.get(value);
+        if (message == null) {
+            message = (TextMessage) encode(value, null);
+            constants.set(value, message);
+        }
+        return message;
+    }
+
+
+    @Override
+    public WebSocketMessage<?> encode(int value, Object args) throws IOException {
+        // 直接写入线程缓冲区, 不再构建中间 Map 和 String
+        MessageBuffer buffer = MessageBuffer.acquire(buffers);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(buffer)) {
+            generator.writeStartObject();
+            generator.writeFieldName(VALUE_FIELD);
+            generator.writeNumber(value);
+            generator.writeFieldName(ARGS_FIELD);
+            if (args == null) {
+                generator.writeStartObject();
+                generator.writeEndObject();
+            } else {
+                mapper.writeValue(generator, args);
+            }
+            generator.writeEndObject();
+        }
+        return new TextMessage(buffer.toByteArray());
+    }
+
+
+    @Override
+    public WebSocketMessage<?> batch(List<WebSocketMessage<?>> messages) {
+        // 每条消息都是完整对象, 直接拼接字节组成数组
+        int length = messages.size() + 1;
+        byte[][] payloads = new byte[messages.size()][];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = ((TextMessage) messages.get(i)).asBytes();
+            length += payloads[i].length;
+        }
+
+        byte[] data = new byte[length];
+        data[0] = '[';
+        int offset = 1;
+        for (byte[] payload : payloads) {
+            System.arraycopy(payload, 0, data, offset, payload.length);
+            offset += payload.length;
+            data[offset++] = ',';
+        }
+        data[length - 1] = ']';
+        return new TextMessage(data);
+    }
+}
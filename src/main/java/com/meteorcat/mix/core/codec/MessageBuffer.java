@@ -0,0 +1,55 @@
+package com.meteorcat.mix.core.codec;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 可复用的编码缓冲区, 每个线程持有一份
+ */
+public class MessageBuffer extends ByteArrayOutputStream {
+
+    /**
+     * 初始容量
+     */
+    final static int INITIAL_CAPACITY = 1024;
+
+    /**
+     * 复用时候保留的最大容量, 超过的缓冲区会被丢弃重建, 避免偶发的大包长期占用内存
+     */
+    final static int RETAIN_CAPACITY = 64 * 1024;
+
+
+    /**
+     * 构造方法
+     */
+    public MessageBuffer() {
+        super(INITIAL_CAPACITY);
+    }
+
+
+    /**
+     * 获取当前线程的缓冲区并清空
+     *
+     * @param buffers 线程缓冲区
+     * @return MessageBuffer
+     */
+    public static MessageBuffer acquire(ThreadLocal<MessageBuffer> buffers) {
+        MessageBuffer buffer = buffers.get();
+        if (buffer.buf.length > RETAIN_CAPACITY) {
+            buffer = new MessageBuffer();
+            buffers.set(buffer);
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+
+    /**
+     * 复制数据到目标数组
+     *
+     * @param target 目标数组
+     * @param offset 目标起始位置
+     */
+    public void copyTo(byte[] target, int offset) {
+        System.arraycopy(buf, 0, target, offset, count);
+    }
+}
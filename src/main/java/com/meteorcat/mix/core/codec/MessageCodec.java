@@ -0,0 +1,98 @@
+package com.meteorcat.mix.core.codec;
+
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 会话消息编解码器, 在握手时候通过 WebSocket 子协议确定
+ */
+public interface MessageCodec {
+
+    /**
+     * 预编码常量响应的协议值上限
+     */
+    int CONSTANT_LIMIT = 1024;
+
+    /**
+     * 对应的 WebSocket 子协议
+     *
+     * @return String
+     */
+    String getProtocol();
+
+
+    /**
+     * 确认消息帧类型是否符合该协议, 如 JSON 协议只接受文本帧
+     *
+     * @param message 请求消息
+     * @return boolean
+     */
+    boolean supports(WebSocketMessage<?> message);
+
+
+    /**
+     * 解码请求, 协议值会先交给过滤器确认, 被拒绝的请求不会继续解析参数
+     *
+     * @param message 请求消息
+     * @param state   会话状态
+     * @param filter  请求过滤器
+     * @return MessagePacket|null, 数据格式错误或者被过滤返回 null
+     * @throws IOException Error
+     */
+    MessagePacket decode(WebSocketMessage<?> message, int state, MessageFilter filter) throws IOException;
+
+
+    /**
+     * 编码没有参数的响应, 同一协议值只编码一次之后复用
+     *
+     * @param value 响应协议值
+     * @return WebSocketMessage
+     * @throws IOException Error
+     */
+    WebSocketMessage<?> encode(int value) throws IOException;
+
+
+    /**
+     * 编码响应
+     *
+     * @param value 响应协议值
+     * @param args  响应数据
+     * @return WebSocketMessage
+     * @throws IOException Error
+     */
+    WebSocketMessage<?> encode(int value, Object args) throws IOException;
+
+
+    /**
+     * 共享已编码的消息给其他会话推送, 广播时候只编码一次
+     * 消息推送时候会消费缓冲区的实现需要重新包装
+     *
+     * @param message 已编码消息
+     * @return WebSocketMessage
+     */
+    default WebSocketMessage<?> share(WebSocketMessage<?> message) {
+        return message;
+    }
+
+
+    /**
+     * 合并多条已编码消息为一帧, 批量推送时候使用, 客户端需要按批量格式解析
+     *
+     * @param messages 已编码消息, 至少一条
+     * @return WebSocketMessage
+     */
+    WebSocketMessage<?> batch(List<WebSocketMessage<?>> messages);
+
+
+    /**
+     * 推送之前压缩消息, 在批量合并之后调用, 默认不压缩
+     *
+     * @param message 已编码消息
+     * @return WebSocketMessage
+     */
+    default WebSocketMessage<?> compress(WebSocketMessage<?> message) {
+        return message;
+    }
+}
@@ -0,0 +1,142 @@
+package com.meteorcat.mix.core.codec;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * 请求参数解码器, 直接从数据流绑定成请求对象, 不构建 JSON 树
+ * 请求对象由 tools/protocol.py 按协议定义生成, 通过静态字段 DECODER 暴露
+ *
+ * @param <T> 请求类型
+ */
+@FunctionalInterface
+public interface MessageDecoder<T> {
+
+    /**
+     * 解码器静态字段名称
+     */
+    String FIELD_NAME = "DECODER";
+
+
+    /**
+     * 解码请求参数
+     *
+     * @param parser 参数数据流, 已经定位在参数对象起始位置, null 代表请求没有参数
+     * @return T
+     * @throws IOException 参数缺失或者类型不匹配
+     */
+    T decode(JsonParser parser) throws IOException;
+
+
+    /**
+     * 构建参数错误
+     *
+     * @param parser  参数数据流
+     * @param message 错误信息
+     * @return JsonParseException
+     */
+    static JsonParseException error(JsonParser parser, String message) {
+        return new JsonParseException(parser, message);
+    }
+
+
+    /**
+     * 确认参数对象起始位置
+     *
+     * @param parser 参数数据流
+     * @throws IOException 参数不是对象
+     */
+    static void object(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw error(parser, "args must be object");
+        }
+    }
+
+
+    /**
+     * 读取 int 字段
+     *
+     * @param parser 参数数据流
+     * @param token  当前字段值
+     * @param name   字段名
+     * @return int
+     * @throws IOException 类型不匹配或者溢出
+     */
+    static int readInt(JsonParser parser, JsonToken token, String name) throws IOException {
+        if (token != JsonToken.VALUE_NUMBER_INT) {
+            throw error(parser, "field must be int: " + name);
+        }
+        return parser.getIntValue();
+    }
+
+
+    /**
+     * 读取 long 字段
+     *
+     * @param parser 参数数据流
+     * @param token  当前字段值
+     * @param name   字段名
+     * @return long
+     * @throws IOException 类型不匹配或者溢出
+     */
+    static long readLong(JsonParser parser, JsonToken token, String name) throws IOException {
+        if (token != JsonToken.VALUE_NUMBER_INT) {
+            throw error(parser, "field must be long: " + name);
+        }
+        return parser.getLongValue();
+    }
+
+
+    /**
+     * 读取 double 字段
+     *
+     * @param parser 参数数据流
+     * @param token  当前字段值
+     * @param name   字段名
+     * @return double
+     * @throws IOException 类型不匹配
+     */
+    static double readDouble(JsonParser parser, JsonToken token, String name) throws IOException {
+        if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT) {
+            throw error(parser, "field must be double: " + name);
+        }
+        return parser.getDoubleValue();
+    }
+
+
+    /**
+     * 读取 boolean 字段
+     *
+     * @param parser 参数数据流
+     * @param token  当前字段值
+     * @param name   字段名
+     * @return boolean
+     * @throws IOException 类型不匹配
+     */
+    static boolean readBoolean(JsonParser parser, JsonToken token, String name) throws IOException {
+        if (token != JsonToken.VALUE_TRUE && token != JsonToken.VALUE_FALSE) {
+            throw error(parser, "field must be boolean: " + name);
+        }
+        return token == JsonToken.VALUE_TRUE;
+    }
+
+
+    /**
+     * 读取 string 字段
+     *
+     * @param parser 参数数据流
+     * @param token  当前字段值
+     * @param name   字段名
+     * @return String
+     * @throws IOException 类型不匹配
+     */
+    static String readString(JsonParser parser, JsonToken token, String name) throws IOException {
+        if (token != JsonToken.VALUE_STRING) {
+            throw error(parser, "field must be string: " + name);
+        }
+        return parser.getText();
+    }
+}
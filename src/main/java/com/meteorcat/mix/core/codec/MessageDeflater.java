@@ -0,0 +1,157 @@
+package com.meteorcat.mix.core.codec;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * 消息压缩器
+ * 超过阈值的消息采用 raw deflate 压缩, 压缩帧格式: 二进制帧 [0x00][deflate 数据]
+ * 协议值 0 不会被业务使用, 客户端读取到首字节为 0 的二进制帧需要先解压再按原格式解析
+ * Deflater 创建需要分配 zlib 本地内存, 所以放在池里复用, 池满之后归还的直接释放
+ */
+public class MessageDeflater {
+
+    /**
+     * 压缩帧标识
+     */
+    public final static byte MARKER = 0;
+
+    /**
+     * 压缩阈值(字节), 小于阈值的消息直接推送
+     */
+    final int threshold;
+
+    /**
+     * 压缩等级
+     */
+    final int level;
+
+    /**
+     * Deflater 池
+     */
+    final BlockingQueue<Deflater> pool;
+
+    /**
+     * 压缩后和压缩前的字节比例
+     */
+    final DistributionSummary ratio;
+
+    /**
+     * 压缩前字节数
+     */
+    final Counter input;
+
+    /**
+     * 压缩后字节数
+     */
+    final Counter output;
+
+    /**
+     * 压缩没有收益直接推送原数据的消息数
+     */
+    final Counter skipped;
+
+
+    /**
+     * 构造方法
+     *
+     * @param threshold 压缩阈值(字节)
+     * @param level     压缩等级 1-9
+     * @param pool      池大小, 一般和推送线程数相同
+     * @param registry  监控指标
+     */
+    public MessageDeflater(int threshold, int level, int pool, MeterRegistry registry) {
+        this.threshold = threshold;
+        this.level = level;
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, pool));
+        this.ratio = DistributionSummary.builder("actor.writer.deflate.ratio")
+                .description("压缩后和压缩前的字节比例")
+                .register(registry);
+        this.input = Counter.builder("actor.writer.deflate.bytes")
+                .description("压缩消息字节数")
+                .tag("type", "input")
+                .register(registry);
+        this.output = Counter.builder("actor.writer.deflate.bytes")
+                .description("压缩消息字节数")
+                .tag("type", "output")
+                .register(registry);
+        this.skipped = Counter.builder("actor.writer.deflate.skipped")
+                .description("压缩没有收益直接推送原数据的消息数")
+                .register(registry);
+    }
+
+
+    /**
+     * 压缩消息, 小于阈值或者压缩之后没有变小的返回原消息
+     *
+     * @param message 已编码消息
+     * @return WebSocketMessage
+     */
+    public WebSocketMessage<?> compress(WebSocketMessage<?> message) {
+        int length = message.getPayloadLength();
+        if (length < threshold || length <= 1) {
+            return message;
+        }
+
+        // 输出缓冲区和原数据等长, 写不下说明压缩没有收益
+        byte[] data = new byte[length];
+        data[0] = MARKER;
+        int size = 1;
+        Deflater deflater = acquire();
+        try {
+            if (message instanceof TextMessage text) {
+                deflater.setInput(text.asBytes());
+            } else {
+                deflater.setInput(((BinaryMessage) message).getPayload().duplicate());
+            }
+            deflater.finish();
+            while (!deflater.finished() && size < length) {
+                size += deflater.deflate(data, size, length - size);
+            }
+            if (!deflater.finished()) {
+                skipped.increment();
+                return message;
+            }
+        } finally {
+            release(deflater);
+        }
+
+        input.increment(length);
+        output.increment(size);
+        ratio.record((double) size / length);
+        return new BinaryMessage(ByteBuffer.wrap(data, 0, size));
+    }
+
+
+    /**
+     * 从池里获取 Deflater, 没有则新建
+     *
+     * @return Deflater
+     */
+    Deflater acquire() {
+        Deflater deflater = pool.poll();
+        return deflater != null ? deflater : new Deflater(level, true);
+    }
+
+
+    /**
+     * 归还 Deflater, 池满直接释放本地内存
+     *
+     * @param deflater Deflater
+     */
+    void release(Deflater deflater) {
+        deflater.reset();
+        if (!pool.offer(deflater)) {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.meteorcat.mix.core.codec;
+
+/**
+ * 请求过滤器, 解码出协议值之后立即确认是否需要继续解析
+ */
+public interface MessageFilter {
+
+    /**
+     * 确认请求是否会被处理
+     *
+     * @param value 请求协议值
+     * @param state 会话状态
+     * @return 返回 false 直接丢弃请求
+     */
+    boolean accept(int value, int state);
+}
@@ -0,0 +1,173 @@
+package com.meteorcat.mix.core.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * 解码之后的请求数据
+ * 解码时候只确认协议值和参数所在区间, 参数在确定需要处理时候才会构建
+ * 文本消息直接记录原始字符串和字符区间, 不再转换成字节数组
+ */
+public final class MessagePacket {
+
+    /**
+     * 参数解析器
+     */
+    final ObjectMapper mapper;
+
+    /**
+     * 请求协议值
+     */
+    final int value;
+
+    /**
+     * 原始数据, 文本消息为 null
+     */
+    final byte[] data;
+
+    /**
+     * 原始文本, 二进制消息为 null
+     */
+    final String text;
+
+    /**
+     * 参数起始位置, 文本消息为字符位置
+     */
+    final int offset;
+
+    /**
+     * 参数长度, 0 代表没有参数
+     */
+    final int length;
+
+
+    /**
+     * 构造方法
+     *
+     * @param mapper 参数解析器
+     * @param value  请求协议值
+     * @param data   原始数据
+     * @param offset 参数起始位置
+     * @param length 参数长度
+     */
+    public MessagePacket(ObjectMapper mapper, int value, byte[] data, int offset, int length) {
+        this.mapper = mapper;
+        this.value = value;
+        this.data = data;
+        this.text = null;
+        this.offset = offset;
+        this.length = length;
+    }
+
+
+    /**
+     * 构造方法
+     *
+     * @param mapper 参数解析器
+     * @param value  请求协议值
+     * @param text   原始文本
+     * @param offset 参数起始字符位置
+     * @param length 参数字符长度
+     */
+    public MessagePacket(ObjectMapper mapper, int value, String text, int offset, int length) {
+        this.mapper = mapper;
+        this.value = value;
+        this.data = null;
+        this.text = text;
+        this.offset = offset;
+        this.length = length;
+    }
+
+
+    /**
+     * 请求协议值
+     *
+     * @return int
+     */
+    public int value() {
+        return value;
+    }
+
+
+    /**
+     * 是否携带参数
+     *
+     * @return boolean
+     */
+    public boolean hasArgs() {
+        return length > 0;
+    }
+
+
+    /**
+     * 构建参数, 可以直接绑定成处理方法声明的类型
+     *
+     * @param type 参数类型, JsonNode 则构建成 JSON 树
+     * @param <T>  参数类型
+     * @return T|null
+     * @throws IOException 数据格式和类型不匹配
+     */
+    public <T> T args(Class<T> type) throws IOException {
+        if (length <= 0) {
+            return null;
+        }
+
+        try (JsonParser parser = parser()) {
+            if (JsonNode.class.equals(type)) {
+                JsonNode node = mapper.readTree(parser);
+                return node != null && node.isObject() ? type.cast(node) : null;
+            }
+            return mapper.readValue(parser, type);
+        }
+    }
+
+
+    /**
+     * 通过解码器直接从数据流构建参数
+     *
+     * @param decoder 请求参数解码器
+     * @param <T>     参数类型
+     * @return T
+     * @throws IOException 参数缺失或者类型不匹配
+     */
+    public <T> T args(MessageDecoder<T> decoder) throws IOException {
+        if (length <= 0) {
+            return decoder.decode(null);
+        }
+
+        try (JsonParser parser = parser()) {
+            parser.nextToken();
+            return decoder.decode(parser);
+        }
+    }
+
+
+    /**
+     * 创建参数区间的解析器
+     * 文本消息从参数起始字符开始读取, 解析器只读取参数对象, 后续字符不会被解析
+     *
+     * @return JsonParser
+     * @throws IOException Error
+     */
+    JsonParser parser() throws IOException {
+        if (text == null) {
+            return mapper.createParser(data, offset, length);
+        }
+        StringReader reader = new StringReader(text);
+        reader.skip(offset);
+        return mapper.createParser(reader);
+    }
+
+
+    @Override
+    public String toString() {
+        return "MessagePacket{" +
+                "value=" + value +
+                ", length=" + length +
+                '}';
+    }
+}
@@ -0,0 +1,196 @@
+package com.meteorcat.mix.core.trace;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 采样请求的处理时间点(System.nanoTime)
+ * 收到请求 -> 信箱开始处理 -> 处理完成, 处理期间推送的第一帧 -> 开始写出 -> 写出完成
+ * 处理期间交给阻塞任务执行器的任务, 回调完成之后才算处理完成, 回调期间推送的响应同样关联到该请求
+ * 处理完成和第一帧写出完成都到达之后记录到统计
+ */
+public final class FrameTrace {
+
+    /**
+     * 所属统计
+     */
+    final FrameTracer tracer;
+
+    /**
+     * 请求协议值
+     */
+    final int value;
+
+    /**
+     * 收到请求
+     */
+    final long received;
+
+    /**
+     * 信箱开始处理
+     */
+    long dispatched;
+
+    /**
+     * 处理完成
+     */
+    long handled;
+
+    /**
+     * 第一帧响应入队
+     */
+    long enqueued;
+
+    /**
+     * 第一帧响应开始写出
+     */
+    long writing;
+
+    /**
+     * 第一帧响应写出完成
+     */
+    long written;
+
+    /**
+     * 未完成的阶段, 处理完成, 阻塞任务回调和响应写出, 归零时候记录统计
+     * 字段在计数变动之前写入, 归零的线程可以读取到所有时间点
+     */
+    final AtomicInteger pending = new AtomicInteger(1);
+
+
+    /**
+     * 构造方法
+     *
+     * @param tracer   所属统计
+     * @param value    请求协议值
+     * @param received 收到请求
+     */
+    FrameTrace(FrameTracer tracer, int value, long received) {
+        this.tracer = tracer;
+        this.value = value;
+        this.received = received;
+    }
+
+
+    /**
+     * 信箱开始处理
+     */
+    public void dispatched() {
+        dispatched = System.nanoTime();
+    }
+
+
+    /**
+     * 处理完成
+     */
+    public void handled() {
+        // 处理和阻塞任务回调可能在不同线程完成, 取最后完成的时间
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (now > handled) {
+                handled = now;
+            }
+        }
+        if (pending.decrementAndGet() == 0) {
+            tracer.complete(this);
+        }
+    }
+
+
+    /**
+     * 处理期间交给阻塞任务执行器, 回调完成之前不记录统计
+     */
+    public void suspended() {
+        pending.incrementAndGet();
+    }
+
+
+    /**
+     * 处理期间推送响应, 只跟踪第一帧
+     * 处理线程和阻塞任务回调线程都可能调用, 所以需要同步
+     *
+     * @return 是否为第一帧
+     */
+    public synchronized boolean enqueued() {
+        if (enqueued != 0L) {
+            return false;
+        }
+        enqueued = System.nanoTime();
+        pending.incrementAndGet();
+        return true;
+    }
+
+
+    /**
+     * 第一帧响应写出完成
+     *
+     * @param start 开始写出
+     * @param end   写出完成
+     */
+    public void written(long start, long end) {
+        writing = start;
+        written = end;
+        if (pending.decrementAndGet() == 0) {
+            tracer.complete(this);
+        }
+    }
+
+
+    /**
+     * 请求协议值
+     *
+     * @return int
+     */
+    public int value() {
+        return value;
+    }
+
+
+    /**
+     * 信箱排队耗时
+     *
+     * @return long
+     */
+    public long queue() {
+        return dispatched - received;
+    }
+
+
+    /**
+     * 处理耗时
+     *
+     * @return long
+     */
+    public long handler() {
+        return handled - dispatched;
+    }
+
+
+    /**
+     * 响应在推送队列等待耗时, 没有响应为 0
+     *
+     * @return long
+     */
+    public long outbound() {
+        return enqueued != 0L ? writing - enqueued : 0L;
+    }
+
+
+    /**
+     * 响应写出耗时, 没有响应为 0
+     *
+     * @return long
+     */
+    public long write() {
+        return enqueued != 0L ? written - writing : 0L;
+    }
+
+
+    /**
+     * 总耗时, 有响应到写出完成, 没有响应到处理完成
+     *
+     * @return long
+     */
+    public long total() {
+        return (enqueued != 0L ? written : handled) - received;
+    }
+}
@@ -0,0 +1,64 @@
+package com.meteorcat.mix.core.trace;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 请求链路耗时监控, 通过 /actuator/frames 查看
+ * 时间单位为微秒
+ */
+@Endpoint(id = "frames")
+public class FrameTraceEndpoint {
+
+    /**
+     * 返回最慢请求数量
+     */
+    final static int SLOWEST_LIMIT = 20;
+
+    /**
+     * 请求链路耗时统计
+     */
+    final FrameTracer tracer;
+
+
+    /**
+     * 构造方法
+     *
+     * @param tracer 请求链路耗时统计
+     */
+    public FrameTraceEndpoint(FrameTracer tracer) {
+        this.tracer = tracer;
+    }
+
+
+    /**
+     * 读取统计
+     *
+     * @return Map
+     */
+    @ReadOperation
+    public Map<String, Object> frames() {
+        List<Map<String, Object>> slowest = new ArrayList<>();
+        for (FrameTrace trace : tracer.slowest(SLOWEST_LIMIT)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("value", trace.value());
+            item.put("total", trace.total() / 1000.0);
+            item.put("queue", trace.queue() / 1000.0);
+            item.put("handler", trace.handler() / 1000.0);
+            item.put("outbound", trace.outbound() / 1000.0);
+            item.put("write", trace.write() / 1000.0);
+            slowest.add(item);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("sample", tracer.getSample());
+        result.put("protocols", tracer.snapshot());
+        result.put("slowest", slowest);
+        return result;
+    }
+}
@@ -0,0 +1,311 @@
+package com.meteorcat.mix.core.trace;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 请求链路耗时统计
+ * 按采样率跟踪请求, 按协议值分别记录 信箱排队/处理/推送排队/写出/总耗时 HDR 直方图
+ * 记录采用 Recorder 无锁写入, 读取时候合并到累计直方图
+ */
+public class FrameTracer {
+
+    /**
+     * 直方图精度
+     */
+    final static int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * 采样率, 每 N 个请求跟踪一个, 0 代表关闭
+     */
+    final int sample;
+
+    /**
+     * 按协议值索引的统计, 第一次记录时候创建
+     */
+    final AtomicReferenceArray<Segments> segments;
+
+    /**
+     * 最近完成的请求
+     */
+    final AtomicReferenceArray<FrameTrace> recent;
+
+    /**
+     * 最近完成请求写入位置
+     */
+    final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * 当前线程正在处理的请求
+     */
+    final ThreadLocal<FrameTrace> current = new ThreadLocal<>();
+
+
+    /**
+     * 构造方法
+     *
+     * @param sample 采样率, 每 N 个请求跟踪一个, 0 代表关闭
+     * @param limit  协议值上限
+     * @param recent 保留最近完成请求数量
+     */
+    public FrameTracer(int sample, int limit, int recent) {
+        this.sample = Math.max(sample, 0);
+        this.segments = new AtomicReferenceArray<>(Math.max(limit, 0));
+        this.recent = new AtomicReferenceArray<>(Math.max(recent, 1));
+    }
+
+
+    /**
+     * 采样率
+     *
+     * @return int
+     */
+    public int getSample() {
+        return sample;
+    }
+
+
+    /**
+     * 收到请求时候按采样率确认是否跟踪
+     *
+     * @param value    请求协议值
+     * @param received 收到请求时间(System.nanoTime)
+     * @return FrameTrace|null
+     */
+    public FrameTrace start(int value, long received) {
+        if (sample <= 0 || value < 0 || value >= segments.length()) {
+            return null;
+        }
+        if (sample > 1 && ThreadLocalRandom.current().nextInt(sample) != 0) {
+            return null;
+        }
+        return new FrameTrace(this, value, received);
+    }
+
+
+    /**
+     * 开始处理, 处理期间推送的响应会关联到该请求
+     *
+     * @param trace 请求
+     */
+    public void enter(FrameTrace trace) {
+        trace.dispatched();
+        current.set(trace);
+    }
+
+
+    /**
+     * 处理完成
+     *
+     * @param trace 请求
+     */
+    public void exit(FrameTrace trace) {
+        current.remove();
+        trace.handled();
+    }
+
+
+    /**
+     * 当前线程处理中的请求交给阻塞任务执行器, ThreadLocal 不会跟随任务转移, 需要先捕获
+     *
+     * @return FrameTrace|null
+     */
+    public FrameTrace suspend() {
+        if (sample <= 0) {
+            return null;
+        }
+        FrameTrace trace = current.get();
+        if (trace != null) {
+            trace.suspended();
+        }
+        return trace;
+    }
+
+
+    /**
+     * 阻塞任务回调开始, 回调期间推送的响应关联到捕获的请求
+     *
+     * @param trace 捕获的请求
+     * @return 回调之前当前线程处理中的请求, 用于回调完成之后恢复
+     */
+    public FrameTrace resume(FrameTrace trace) {
+        FrameTrace previous = current.get();
+        current.set(trace);
+        return previous;
+    }
+
+
+    /**
+     * 阻塞任务回调完成
+     *
+     * @param trace    捕获的请求
+     * @param previous 回调之前当前线程处理中的请求
+     */
+    public void release(FrameTrace trace, FrameTrace previous) {
+        if (previous != null) {
+            current.set(previous);
+        } else {
+            current.remove();
+        }
+        trace.handled();
+    }
+
+
+    /**
+     * 当前线程处理中的请求, 只有第一帧响应会返回
+     *
+     * @return FrameTrace|null
+     */
+    public FrameTrace attach() {
+        if (sample <= 0) {
+            return null;
+        }
+        FrameTrace trace = current.get();
+        return trace != null && trace.enqueued() ? trace : null;
+    }
+
+
+    /**
+     * 请求完成, 记录统计
+     *
+     * @param trace 请求
+     */
+    void complete(FrameTrace trace) {
+        Segments target = segments.get(trace.value);
+        if (target == null) {
+            segments.compareAndSet(trace.value, null, new Segments());
+            target = segments.get(trace.value);
+        }
+        target.record(trace);
+        recent.set((int) (cursor.getAndIncrement() % recent.length()), trace);
+    }
+
+
+    /**
+     * 按协议值读取统计
+     *
+     * @return List
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (int value = 0; value < segments.length(); value++) {
+            Segments target = segments.get(value);
+            if (target != null) {
+                snapshots.add(target.snapshot(value));
+            }
+        }
+        return snapshots;
+    }
+
+
+    /**
+     * 最近完成的请求中耗时最长的请求
+     *
+     * @param limit 数量
+     * @return List
+     */
+    public List<FrameTrace> slowest(int limit) {
+        List<FrameTrace> traces = new ArrayList<>(recent.length());
+        for (int i = 0; i < recent.length(); i++) {
+            FrameTrace trace = recent.get(i);
+            if (trace != null) {
+                traces.add(trace);
+            }
+        }
+        traces.sort(Comparator.comparingLong(FrameTrace::total).reversed());
+        return traces.size() > limit ? traces.subList(0, limit) : traces;
+    }
+
+
+    /**
+     * 单个协议值的分段统计
+     */
+    static final class Segments {
+
+        final Recorder queue = new Recorder(SIGNIFICANT_DIGITS);
+        final Recorder handler = new Recorder(SIGNIFICANT_DIGITS);
+        final Recorder outbound = new Recorder(SIGNIFICANT_DIGITS);
+        final Recorder write = new Recorder(SIGNIFICANT_DIGITS);
+        final Recorder total = new Recorder(SIGNIFICANT_DIGITS);
+
+        /**
+         * 累计直方图, 下标和 recorders 一致, 只在读取时候加锁合并
+         */
+        final Histogram[] histograms = new Histogram[5];
+
+        void record(FrameTrace trace) {
+            queue.recordValue(Math.max(trace.queue(), 0L));
+            handler.recordValue(Math.max(trace.handler(), 0L));
+            if (trace.enqueued != 0L) {
+                outbound.recordValue(Math.max(trace.outbound(), 0L));
+                write.recordValue(Math.max(trace.write(), 0L));
+            }
+            total.recordValue(Math.max(trace.total(), 0L));
+        }
+
+        synchronized Snapshot snapshot(int value) {
+            Recorder[] recorders = {queue, handler, outbound, write, total};
+            for (int i = 0; i < recorders.length; i++) {
+                Histogram interval = recorders[i].getIntervalHistogram();
+                if (histograms[i] == null) {
+                    histograms[i] = interval;
+                } else {
+                    histograms[i].add(interval);
+                }
+            }
+            return new Snapshot(
+                    value,
+                    Percentiles.of(histograms[0]),
+                    Percentiles.of(histograms[1]),
+                    Percentiles.of(histograms[2]),
+                    Percentiles.of(histograms[3]),
+                    Percentiles.of(histograms[4])
+            );
+        }
+    }
+
+
+    /**
+     * 单个协议值的统计快照
+     *
+     * @param value    协议值
+     * @param queue    信箱排队
+     * @param handler  处理
+     * @param outbound 推送排队
+     * @param write    写出
+     * @param total    总耗时
+     */
+    public record Snapshot(int value, Percentiles queue, Percentiles handler, Percentiles outbound,
+                           Percentiles write, Percentiles total) {
+    }
+
+
+    /**
+     * 分位数, 单位微秒
+     *
+     * @param count 数量
+     * @param p50   50%
+     * @param p99   99%
+     * @param p999  99.9%
+     * @param max   最大值
+     */
+    public record Percentiles(long count, double p50, double p99, double p999, double max) {
+
+        static Percentiles of(Histogram histogram) {
+            return new Percentiles(
+                    histogram.getTotalCount(),
+                    histogram.getValueAtPercentile(50.0) / 1000.0,
+                    histogram.getValueAtPercentile(99.0) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0
+            );
+        }
+    }
+}
@@ -1,15 +1,16 @@
 package com.meteorcat.mix.logic;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.meteorcat.mix.WebsocketApplication;
 import com.meteorcat.mix.constant.ActorStatus;
 import com.meteorcat.mix.constant.Protocols;
+import com.meteorcat.mix.constant.request.AuthLoginRequest;
+import com.meteorcat.mix.core.ActorArgsError;
 import com.meteorcat.spring.boot.starter.ActorConfigurer;
-import com.meteorcat.spring.boot.starter.ActorEventContainer;
 import com.meteorcat.spring.boot.starter.ActorMapping;
 import com.meteorcat.spring.boot.starter.EnableActor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.util.DigestUtils;
 import org.springframework.web.socket.WebSocketSession;
 
@@ -29,17 +30,6 @@ public class AuthorizedActor extends ActorConfigurer {
     final Logger logger = LoggerFactory.getLogger(getClass());
 
 
-    /**
-     * 玩家授权UID
-     */
-    final static String UID_NAME = "uid";
-
-    /**
-     * 玩家授权SECRET
-     */
-    final static String SECRET_NAME = "secret";
-
-
     /**
      * 心跳包推送周期
      */
@@ -47,16 +37,19 @@ public class AuthorizedActor extends ActorConfigurer {
 
 
     /**
-     * 登录授权码 - 先采用静态
+     * 登录授权码 - 先采用静态, 没有配置 auth.secret 时候启动随机生成
      */
-    String secret;
+    @Value("${auth.secret:}")
+    String secret = "";
 
     /**
      * 初始化
      */
     @Override
     public void init() {
-        secret = DigestUtils.md5DigestAsHex(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+        if (secret == null || secret.isBlank()) {
+            secret = DigestUtils.md5DigestAsHex(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+        }
         logger.debug("启动登录验证 = {}", secret);
     }
 
@@ -75,84 +68,39 @@ public class AuthorizedActor extends ActorConfigurer {
      *
      * @param app     应用
      * @param session 会话
-     * @param data    数据
+     * @param data    数据, 参数缺失或者类型错误在解码时候直接响应 AUTH_ERROR_BY_SECRET
      */
+    @ActorArgsError(Protocols.AUTH_ERROR_BY_SECRET)
     @ActorMapping(value = Protocols.AUTH_LOGIN, state = {ActorStatus.None})
-    public void login(WebsocketApplication app, WebSocketSession session, JsonNode data) {
-        // 确认参数
-        if (!data.has(UID_NAME) || !data.has(SECRET_NAME)) {
-            app.push(session, Protocols.AUTH_ERROR_BY_SECRET);
-            return;
-        }
-
-        // 获取参数
-        JsonNode uidNode = data.get(UID_NAME);
-        JsonNode secretNode = data.get(SECRET_NAME);
-        if (!uidNode.isNumber() || !secretNode.isTextual()) {
-            app.push(session, Protocols.AUTH_ERROR_BY_SECRET);
-            return;
-        }
-
-
+    public void login(WebsocketApplication app, WebSocketSession session, AuthLoginRequest data) {
         // 验证登录
-        if (secret.isBlank() || !secret.equals(secretNode.asText())) {
+        if (secret.isBlank() || !secret.equals(data.secret())) {
             app.push(session, Protocols.AUTH_ERROR_BY_EXISTS);
             return;
         }
 
         // 获取玩家ID
-        Long uid = uidNode.asLong();
+        long uid = data.uid();
 
 
-        // 确认是否有其他目前在登录, 直接顶号提出
-        WebSocketSession other = app.getSessionUid(uid);
+        // 设置目前在线, 如果有其他目前在登录, 直接顶号提出
+        WebSocketSession other = app.setSessionUid(session, uid);
         if (other != null) {
             app.push(other, Protocols.AUTH_ERROR_BY_OTHER);
             app.quit(other);
         }
 
 
-        // 设置目前在线并且切换状态
-        app.setSessionUid(session, uid);
+        // 切换状态
         app.setSessionState(session, ActorStatus.Authorized);
 
 
         // 推送心跳包定时事件
-        ActorEventContainer container = getContainer();
-        container.schedule(
-                () -> heartbeat(app, session, container),
-                HEARTBEAT_SEC,
-                TimeUnit.SECONDS
-        );
-
-
-        // 确定是否需要创建账号
-        ActorConfigurer configurer = container.get(Protocols.SYS_PLAYER_EXISTS);
-        if (configurer != null) {
-            configurer.invoke(Protocols.SYS_PLAYER_EXISTS, ActorStatus.Memory, app, session, uid);
-        }
-    }
-
+        app.heartbeat(session, HEARTBEAT_SEC, TimeUnit.SECONDS);
 
-    /**
-     * 心跳包推送 - 采用定时递归
-     *
-     * @param app       应用
-     * @param session   会话
-     * @param container 定时器
-     */
-    private void heartbeat(WebsocketApplication app, WebSocketSession session, ActorEventContainer container) {
-        if (!session.isOpen()) {
-            return;
-        }
 
-        // 推送心跳包, 延时等待调用
-        app.push(session, Protocols.SYS_HEARTBEAT);
-        container.schedule(
-                () -> heartbeat(app, session, container),
-                HEARTBEAT_SEC,
-                TimeUnit.SECONDS
-        );
+        // 确定是否需要创建账号, 投递到玩家信箱保证和后续请求顺序执行
+        app.invoke(uid, Protocols.SYS_PLAYER_EXISTS, app, session, uid);
     }
 
 }
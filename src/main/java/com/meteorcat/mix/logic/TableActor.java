@@ -0,0 +1,78 @@
+package com.meteorcat.mix.logic;
+
+import com.meteorcat.mix.server.ConfigTableServer;
+import com.meteorcat.spring.boot.starter.ActorConfigurer;
+import com.meteorcat.spring.boot.starter.ActorEventContainer;
+import com.meteorcat.spring.boot.starter.EnableActor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 策划配置表热更新
+ */
+@EnableActor(owner = TableActor.class)
+public class TableActor extends ActorConfigurer {
+
+    /**
+     * 日志对象
+     */
+    final Logger logger = LoggerFactory.getLogger(getClass());
+
+
+    /**
+     * 配置表服务
+     */
+    final ConfigTableServer configTableServer;
+
+
+    /**
+     * 配置表变动检查周期(毫秒), 0 代表不检查
+     */
+    @Value("${table.reload.interval:10000}")
+    long reloadInterval = 10000L;
+
+
+    /**
+     * 配置表检查任务
+     */
+    ScheduledFuture<?> event = null;
+
+
+    /**
+     * 构造方法
+     *
+     * @param configTableServer 配置表服务
+     */
+    public TableActor(ConfigTableServer configTableServer) {
+        this.configTableServer = configTableServer;
+    }
+
+
+    /**
+     * 初始化
+     */
+    @Override
+    public void init() {
+        ActorEventContainer container = getContainer();
+        if (container != null && reloadInterval > 0) {
+            logger.info("启动配置表热更新");
+            event = container.scheduleAtFixedRate(configTableServer::reload, reloadInterval, reloadInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * 退出
+     */
+    @Override
+    public void destroy() {
+        logger.info("退出配置表热更新");
+        if (event != null) {
+            event.cancel(false);
+        }
+    }
+}
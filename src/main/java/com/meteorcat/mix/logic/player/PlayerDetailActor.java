@@ -4,19 +4,26 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.meteorcat.mix.WebsocketApplication;
 import com.meteorcat.mix.constant.ActorStatus;
 import com.meteorcat.mix.constant.Protocols;
+import com.meteorcat.mix.constant.request.PlayerCreateRequest;
 import com.meteorcat.mix.model.PlayerInfoModel;
+import com.meteorcat.mix.server.ConfigTableServer;
 import com.meteorcat.mix.server.PlayerInfoServer;
+import com.meteorcat.mix.table.SceneTable;
 import com.meteorcat.spring.boot.starter.ActorConfigurer;
 import com.meteorcat.spring.boot.starter.ActorEventContainer;
 import com.meteorcat.spring.boot.starter.ActorMapping;
 import com.meteorcat.spring.boot.starter.EnableActor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.socket.WebSocketSession;
 
-import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * 玩家信息
@@ -36,6 +43,49 @@ public class PlayerDetailActor extends ActorConfigurer {
     final PlayerInfoServer playerInfoServer;
 
 
+    /**
+     * 配置表服务
+     */
+    final ConfigTableServer configTableServer;
+
+
+    /**
+     * 创建角色场景标识
+     */
+    final static String SCENE_CREATE = "player_create";
+
+
+    /**
+     * 玩家首页场景标识
+     */
+    final static String SCENE_HOME = "player_home";
+
+
+    /**
+     * 配置表没有创建角色场景时候采用的场景ID
+     */
+    final static int SCENE_CREATE_DEFAULT = 1;
+
+
+    /**
+     * 配置表没有玩家首页场景时候采用的场景ID
+     */
+    final static int SCENE_HOME_DEFAULT = 2;
+
+
+    /**
+     * 创建进行中的玩家ID
+     */
+    final Set<Long> creating = ConcurrentHashMap.newKeySet();
+
+
+    /**
+     * 玩家数据落地周期(毫秒)
+     */
+    @Value("${player.flush.interval:3000}")
+    long flushInterval = 3000L;
+
+
     /**
      * 玩家数据落地任务
      */
@@ -45,10 +95,12 @@ public class PlayerDetailActor extends ActorConfigurer {
     /**
      * 构造方法
      *
-     * @param playerInfoServer 玩家信息服务
+     * @param playerInfoServer  玩家信息服务
+     * @param configTableServer 配置表服务
      */
-    public PlayerDetailActor(PlayerInfoServer playerInfoServer) {
+    public PlayerDetailActor(PlayerInfoServer playerInfoServer, ConfigTableServer configTableServer) {
         this.playerInfoServer = playerInfoServer;
+        this.configTableServer = configTableServer;
     }
 
 
@@ -58,16 +110,20 @@ public class PlayerDetailActor extends ActorConfigurer {
     @Override
     public void init() throws Exception {
         // 启动的时候定时运行异步数据库写入任务
-        // 这里3秒检索下需要异步落地的任务, 具体可以自己调整
+        // 默认3秒检索下需要异步落地的任务, 通过 player.flush.interval 调整
+        // 变动已经写入日志, 崩溃之后启动时候重放, 落地间隔可以适当放大减少数据库写入
         ActorEventContainer container = getContainer();
         if (container != null) {
             logger.info("创建玩家数据落地服务");
-            event = container.scheduleAtFixedRate(playerInfoServer::flush, 3L, 3L, TimeUnit.SECONDS);
+            event = container.scheduleAtFixedRate(() -> {
+                playerInfoServer.flush();
+                playerInfoServer.evict();
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
         }
     }
 
     /**
-     * 服务退出
+     * 服务退出, 最后一次落地之后写入玩家快照
      */
     @Override
     public void destroy() throws Exception {
@@ -76,6 +132,7 @@ public class PlayerDetailActor extends ActorConfigurer {
             event.cancel(false);
         }
         playerInfoServer.flush();
+        playerInfoServer.snapshot();
     }
 
 
@@ -88,26 +145,45 @@ public class PlayerDetailActor extends ActorConfigurer {
      */
     @ActorMapping(value = Protocols.SYS_PLAYER_EXISTS, state = ActorStatus.Memory)
     public void check(WebsocketApplication app, WebSocketSession session, Long uid) {
-        PlayerInfoModel model = playerInfoServer.findByUid(uid);
-        boolean create = false;
-        int scene = 2;// 可能需要客户端切换创建玩家场景
-
-        // 如果没有玩家数据代表需要跳转创建角色场景
-        // 这里需要灵活配置, 因为场景切换也需要服务端确认
-        if (model == null) {
-            create = true;
-            scene = 1;
-        }
+        load(app, session, uid, model -> {
+            // 如果没有玩家数据代表需要跳转创建角色场景
+            // 场景由策划配置表 场景定义@Scene.csv 按场景标识确定
+            boolean create = model == null;
+            SceneTable scenes = configTableServer.scene();
+            // 注意: 默认配置表的玩家首页为 100, 客户端场景需要和配置表保持一致
+            int scene = create
+                    ? scenes.key(SCENE_CREATE, SCENE_CREATE_DEFAULT)
+                    : scenes.key(SCENE_HOME, SCENE_HOME_DEFAULT);
+
+
+            // 确定响应的数据
+            app.push(session, Protocols.AUTH_LOGIN_SUCCESS, Map.of(
+                    "timestamp", System.currentTimeMillis(),
+                    "scene", scene,// 确定切换的关卡
+                    "create", create
+            ));
+        });
+    }
 
 
-        // 确定响应的数据
-        boolean finalCreate = create;
-        int finalScene = scene;
-        app.push(session, Protocols.AUTH_LOGIN_SUCCESS, new HashMap<>(3) {{
-            put("timestamp", System.currentTimeMillis());
-            put("scene", finalScene);// 确定切换的关卡
-            put("create", finalCreate);
-        }});
+    /**
+     * 玩家离线, 从内存淘汰
+     * 在玩家信箱内执行, 和重新登录的加载顺序执行; 已经重新登录或者离线之后被访问过的玩家保留
+     * 有未落地的数据则等待下次定时落地之后淘汰
+     *
+     * @param app     应用
+     * @param session 会话
+     * @param uid     玩家ID
+     */
+    @ActorMapping(value = Protocols.SYS_PLAYER_LOGOUT, state = ActorStatus.Memory)
+    public void logout(WebsocketApplication app, WebSocketSession session, Long uid) {
+        logger.debug("玩家离线: {}", uid);
+        if (app.getSessionUid(uid) != null) {
+            return;
+        }
+        if (playerInfoServer.evict(uid, System.currentTimeMillis())) {
+            logger.debug("玩家淘汰: {}", uid);
+        }
     }
 
 
@@ -117,49 +193,54 @@ public class PlayerDetailActor extends ActorConfigurer {
      * 示例: { "value": 200, "args": { "nickname":"昵称","gender":0|1|2,....... } }
      */
     @ActorMapping(value = Protocols.PLAYER_CREATE, state = ActorStatus.Authorized)
-    public void create(WebsocketApplication app, WebSocketSession session, JsonNode data) {
+    public void create(WebsocketApplication app, WebSocketSession session, PlayerCreateRequest data) {
         // 玩家实体对象比较复杂, 如果简单游戏只有昵称性别, 如果复杂则有玩家头像|加点倾向|玩家职业等
         // 所以这里需要判断具体的玩家类型在数据库存在与否
         Long uid = app.getSessionUid(session);
 
-        // 确认玩家存在, 如果存在就直接跳过任务
-        PlayerInfoModel model = playerInfoServer.findByUid(uid);
-        if (model != null) {
-            app.push(session, Protocols.PLAYER_EXISTS);
+
+        // 昵称审核, 注意这里昵称可能要关键字屏蔽
+        String nickname = data.nickname();
+        if (nickname.isBlank()) {
+            app.push(session, Protocols.SYS_PARAM_ERROR);
             return;
         }
 
 
-        // 获取所需的参数
-        JsonNode nicknameNode = data.get("nickname");
-        if (nicknameNode == null || !nicknameNode.isTextual()) {
-            app.push(session, Protocols.SYS_PARAM_ERROR);
+        // 确认玩家存在, 如果存在就直接跳过任务
+        if (playerInfoServer.findCachedByUid(uid) != null) {
+            app.push(session, Protocols.PLAYER_EXISTS);
             return;
         }
 
-        // 昵称审核, 注意这里昵称可能要关键字屏蔽
-        String nickname = nicknameNode.asText();
-        if (nickname.isBlank()) {
-            app.push(session, Protocols.SYS_PARAM_ERROR);
+
+        // 同一个玩家只允许一个创建进行中, 重复请求直接按已存在处理
+        if (!creating.add(uid)) {
+            app.push(session, Protocols.PLAYER_EXISTS);
             return;
         }
 
 
-        // 不存在则直接创建数据库实体
+        // 不存在则直接创建数据库实体, 查询和写入在同一个阻塞任务完成, 已经存在返回 null
         PlayerInfoModel owner = new PlayerInfoModel();
         owner.setNickname(nickname);
         owner.setGold(0);
         owner.setCreateTime(System.currentTimeMillis());
         owner.setUpdateTime(0L);
-        owner = playerInfoServer.create(owner);
-        logger.debug("创建玩家实体: {}", owner);
-
-
-        // 响应返回玩家实体用于客户端加载
-        PlayerInfoModel finalOwner = owner;
-        app.push(session, Protocols.PLAYER_INFO, new HashMap<>(1) {{
-            put("player", finalOwner);
-        }});
+        app.offload(uid, () -> playerInfoServer.findByUid(uid) != null ? null : playerInfoServer.create(owner), created -> {
+            creating.remove(uid);
+            if (created == null) {
+                app.push(session, Protocols.PLAYER_EXISTS);
+                return;
+            }
+            logger.debug("创建玩家实体: {}", created);
+
+            // 响应返回玩家实体用于客户端加载
+            app.push(session, Protocols.PLAYER_INFO, Map.of("player", created));
+        }, exception -> {
+            creating.remove(uid);
+            app.push(session, Protocols.SYS_SERVER_ERROR);
+        });
     }
 
     /**
@@ -176,17 +257,37 @@ public class PlayerDetailActor extends ActorConfigurer {
         Long uid = app.getSessionUid(session);
 
         // 获取出玩家实体如果没有直接返回错误
-        PlayerInfoModel model = playerInfoServer.findByUid(uid);
-        if (model == null) {
-            app.push(session, Protocols.PLAYER_NOT_FOUND);
-            return;
-        }
+        load(app, session, uid, model -> {
+            if (model == null) {
+                app.push(session, Protocols.PLAYER_NOT_FOUND);
+                return;
+            }
 
 
-        // 直接返回玩家所有数据
-        app.push(session, Protocols.PLAYER_INFO, new HashMap<>(1) {{
-            put("player", model);
-        }});
+            // 直接返回玩家所有数据
+            app.push(session, Protocols.PLAYER_INFO, Map.of("player", model));
+        });
+    }
+
+
+    /**
+     * 加载玩家实体
+     * 内存命中直接在当前信箱处理, 未命中交给阻塞任务执行器查询数据库, 结果投递回玩家信箱处理
+     *
+     * 数据库查询失败响应 SYS_SERVER_ERROR
+     *
+     * @param app      应用
+     * @param session  会话
+     * @param uid      玩家ID
+     * @param callback 结果处理, 玩家不存在时候为 null
+     */
+    void load(WebsocketApplication app, WebSocketSession session, Long uid, Consumer<PlayerInfoModel> callback) {
+        PlayerInfoModel model = playerInfoServer.findCachedByUid(uid);
+        if (model != null) {
+            callback.accept(model);
+            return;
+        }
+        app.offload(uid, () -> playerInfoServer.findByUid(uid), callback, exception -> app.push(session, Protocols.SYS_SERVER_ERROR));
     }
 
 }
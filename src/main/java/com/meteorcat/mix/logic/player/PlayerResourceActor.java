@@ -1,5 +1,6 @@
 package com.meteorcat.mix.logic.player;
 
+import com.meteorcat.mix.WebsocketApplication;
 import com.meteorcat.mix.constant.ActorStatus;
 import com.meteorcat.mix.constant.Protocols;
 import com.meteorcat.mix.model.PlayerInfoModel;
@@ -56,18 +57,41 @@ public class PlayerResourceActor extends ActorConfigurer {
 
 
     /**
-     * 修改玩家金币
+     * 修改玩家金币, 通过 app.invoke(uid, SYS_CHANGE_GOLD, app, uid, gold) 投递到玩家信箱
+     * 内存命中直接在当前信箱处理, 未命中交给阻塞任务执行器加载, 结果投递回玩家信箱再修改
      *
+     * @param app  应用
      * @param uid  玩家UID
-     * @param gold 修改金币, 正数为追加, 负数为扣除
+     * @param gold 修改金币, 正数为追加, 负数为扣除, 余额越界则拒绝修改
      */
     @ActorMapping(value = Protocols.SYS_CHANGE_GOLD, state = ActorStatus.Memory)
-    public void changeGold(Long uid, Integer gold) {
-        PlayerInfoModel model = playerInfoServer.findByUid(uid);
+    public void changeGold(WebsocketApplication app, Long uid, Integer gold) {
+        PlayerInfoModel model = playerInfoServer.findCachedByUid(uid);
         if (model != null) {
+            change(uid, model, gold);
+            return;
+        }
+        app.offload(uid, () -> playerInfoServer.findByUid(uid), loaded -> {
+            if (loaded != null) {
+                change(uid, loaded, gold);
+            }
+        }, exception -> logger.error("玩家:{} 加载失败, 丢弃金币修改 {}", uid, gold));
+    }
+
+
+    /**
+     * 修改内存金币
+     *
+     * @param uid   玩家UID
+     * @param model 玩家实体
+     * @param gold  修改金币
+     */
+    void change(Long uid, PlayerInfoModel model, Integer gold) {
+        // 内存原子累计增量, 落地时候按增量批量写入
+        if (playerInfoServer.changeGold(model, gold)) {
             logger.debug("玩家:{} 修改金币 {}", uid, gold);
-            model.setGold(model.getGold() + gold);
-            playerInfoServer.mark(uid, model);
+        } else {
+            logger.warn("玩家:{} 修改金币越界 {}, 当前 {}", uid, gold, model.getGold());
         }
     }
 
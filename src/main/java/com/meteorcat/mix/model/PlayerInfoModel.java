@@ -66,6 +66,14 @@ public class PlayerInfoModel {
         return updateTime;
     }
 
+    public Integer getLastScene() {
+        return lastScene;
+    }
+
+    public void setUid(Long uid) {
+        this.uid = uid;
+    }
+
     public void setNickname(String nickname) {
         this.nickname = nickname;
     }
@@ -82,6 +90,10 @@ public class PlayerInfoModel {
         this.updateTime = updateTime;
     }
 
+    public void setLastScene(Integer lastScene) {
+        this.lastScene = lastScene;
+    }
+
     @Override
     public String toString() {
         return "PlayerInfoModel{" +
@@ -90,6 +102,7 @@ public class PlayerInfoModel {
                 ", gold=" + gold +
                 ", createTime=" + createTime +
                 ", updateTime=" + updateTime +
+                ", lastScene=" + lastScene +
                 '}';
     }
 }
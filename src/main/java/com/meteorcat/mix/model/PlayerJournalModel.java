@@ -0,0 +1,81 @@
+package com.meteorcat.mix.model;
+
+import jakarta.persistence.*;
+
+/**
+ * 玩家日志落地水位, 和玩家数据在同一个事务内更新
+ * 启动重放时候跳过水位之前的分段, 避免金币增量重复写入
+ * 纪元和版本用于校验玩家快照: 纪元在创建记录时候随机生成, 每次写入玩家数据版本递增
+ */
+@Entity
+@Table(name = "tbl_player_journal")
+public class PlayerJournalModel {
+
+    /**
+     * 固定为 1, 单服只有一行
+     */
+    @Id
+    @Column(nullable = false, columnDefinition = "INT COMMENT '主键ID'")
+    private Integer id;
+
+    /**
+     * 已经落地的最后一个日志分段
+     */
+    @Column(nullable = false, columnDefinition = "BIGINT COMMENT '已经落地的日志分段'")
+    private Long segment = 0L;
+
+    /**
+     * 数据库纪元, 数据库重建之后变化
+     */
+    @Column(nullable = false, columnDefinition = "VARCHAR(36) COMMENT '数据库纪元'")
+    private String epoch;
+
+    /**
+     * 玩家数据写入版本
+     */
+    @Column(nullable = false, columnDefinition = "BIGINT COMMENT '玩家数据写入版本'")
+    private Long revision = 0L;
+
+
+    public Integer getId() {
+        return id;
+    }
+
+    public Long getSegment() {
+        return segment;
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public Long getRevision() {
+        return revision;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public void setSegment(Long segment) {
+        this.segment = segment;
+    }
+
+    public void setEpoch(String epoch) {
+        this.epoch = epoch;
+    }
+
+    public void setRevision(Long revision) {
+        this.revision = revision;
+    }
+
+    @Override
+    public String toString() {
+        return "PlayerJournalModel{" +
+                "id=" + id +
+                ", segment=" + segment +
+                ", epoch='" + epoch + '\'' +
+                ", revision=" + revision +
+                '}';
+    }
+}
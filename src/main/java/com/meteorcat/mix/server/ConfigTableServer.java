@@ -0,0 +1,218 @@
+package com.meteorcat.mix.server;
+
+import com.meteorcat.mix.table.ConfigTables;
+import com.meteorcat.mix.table.ExperienceTable;
+import com.meteorcat.mix.table.SceneTable;
+import com.meteorcat.mix.table.TableReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * 策划配置表服务
+ * 启动时候加载 CSV 表, 重载时候完整构建新快照之后原子替换, 构建失败保留旧快照
+ * 没有指定 table.path 读取打包在 jar 内的 table 目录, 不支持热更新; 指定外部目录才会按文件修改时间重载
+ */
+@Service
+public class ConfigTableServer {
+
+    /**
+     * 日志句柄
+     */
+    final Logger logger = LoggerFactory.getLogger(ConfigTableServer.class);
+
+    /**
+     * 文件名分隔符, 格式为 策划可视文件名@代码声明类名.csv
+     */
+    final static String FORMAT = "@";
+
+    /**
+     * jar 内配置表位置
+     */
+    final static String CLASSPATH = "classpath*:table/";
+
+    /**
+     * 外部配置表目录, 为 null 代表读取 jar 内配置表
+     */
+    final Path path;
+
+    /**
+     * jar 内配置表查找
+     */
+    final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+    /**
+     * 配置表编码
+     */
+    final Charset encoding;
+
+    /**
+     * 当前配置表快照
+     */
+    final AtomicReference<ConfigTables> tables = new AtomicReference<>();
+
+    /**
+     * 已加载文件的修改时间合计, 用于确认是否需要重载
+     */
+    volatile long modified = -1L;
+
+
+    /**
+     * 构造方法, 启动时候加载失败直接中断启动
+     *
+     * @param path     外部配置表目录, 为空读取 jar 内配置表
+     * @param encoding 配置表编码
+     * @throws IOException 加载失败
+     */
+    public ConfigTableServer(
+            @Value("${table.path:}") String path,
+            @Value("${table.encoding:GBK}") String encoding
+    ) throws IOException {
+        this.path = path == null || path.isBlank() ? null : Paths.get(path).toAbsolutePath();
+        this.encoding = Charset.forName(encoding);
+        load();
+    }
+
+
+    /**
+     * 获取当前配置表快照, 同一次处理内使用同一份快照保证数据一致
+     *
+     * @return ConfigTables
+     */
+    public ConfigTables get() {
+        return tables.get();
+    }
+
+
+    /**
+     * 场景定义表
+     *
+     * @return SceneTable
+     */
+    public SceneTable scene() {
+        return tables.get().scene();
+    }
+
+
+    /**
+     * 经验等级表
+     *
+     * @return ExperienceTable
+     */
+    public ExperienceTable experience() {
+        return tables.get().experience();
+    }
+
+
+    /**
+     * 配置表文件有变动则重载
+     *
+     * @return 是否已经重载
+     */
+    public synchronized boolean reload() {
+        try {
+            if (fingerprint() == modified) {
+                return false;
+            }
+            load();
+            return true;
+        } catch (IOException exception) {
+            logger.error("配置表重载失败, 保留当前版本: {}", exception.getMessage());
+            return false;
+        }
+    }
+
+
+    /**
+     * 构建并替换配置表快照
+     *
+     * @throws IOException 加载失败
+     */
+    synchronized void load() throws IOException {
+        long fingerprint = fingerprint();
+        ConfigTables current = tables.get();
+        ConfigTables next = new ConfigTables(
+                current != null ? current.version() + 1 : 1L,
+                SceneTable.build(read(SceneTable.NAME)),
+                ExperienceTable.build(read(ExperienceTable.NAME))
+        );
+        tables.set(next);
+        modified = fingerprint;
+        logger.info("加载配置表: version = {}, scene = {}, level = {}",
+                next.version(), next.scene().size(), next.experience().maxLevel());
+    }
+
+
+    /**
+     * 按代码声明类名读取配置表
+     *
+     * @param name 类名, 如 Scene
+     * @return TableReader
+     * @throws IOException 文件不存在或者读取失败
+     */
+    TableReader read(String name) throws IOException {
+        String suffix = FORMAT + name + ".csv";
+        if (path != null) {
+            return TableReader.read(find(suffix), encoding);
+        }
+
+        Resource[] resources = resolver.getResources(CLASSPATH + "*" + suffix);
+        if (resources.length == 0) {
+            throw new IOException("table file missing: " + CLASSPATH + "*" + suffix);
+        }
+        try (InputStream input = resources[0].getInputStream()) {
+            return TableReader.read(resources[0].getFilename(), input, encoding);
+        }
+    }
+
+
+    /**
+     * 按文件后缀查询外部目录表文件
+     *
+     * @param suffix 文件后缀, 如 @Scene.csv
+     * @return Path
+     * @throws IOException 文件不存在
+     */
+    Path find(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix))
+                    .findFirst()
+                    .orElseThrow(() -> new IOException("table file missing: " + path.resolve("*" + suffix)));
+        }
+    }
+
+
+    /**
+     * 配置表文件修改时间合计, jar 内配置表不会变动固定为 0
+     *
+     * @return long
+     * @throws IOException Error
+     */
+    long fingerprint() throws IOException {
+        long fingerprint = 0L;
+        if (path == null) {
+            return fingerprint;
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(".csv")) {
+                    fingerprint += Files.getLastModifiedTime(file).toMillis();
+                }
+            }
+        }
+        return fingerprint;
+    }
+}
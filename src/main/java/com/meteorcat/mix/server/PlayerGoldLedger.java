@@ -0,0 +1,159 @@
+package com.meteorcat.mix.server;
+
+import com.meteorcat.mix.model.PlayerInfoModel;
+import org.springframework.lang.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 玩家金币账本
+ * 金币变动只在内存累计增量, 落地时候按 gold = gold + ? 批量写入, 不再整行更新
+ * 实体金币字段是 Integer, 所以余额限制在 [0, Integer.MAX_VALUE] 区间
+ */
+public class PlayerGoldLedger {
+
+    /**
+     * 增量落地语句
+     */
+    static final String STATEMENT = "UPDATE tbl_player_info SET gold = gold + ? WHERE uid = ?";
+
+    /**
+     * 玩家账户
+     */
+    final ConcurrentHashMap<Long, Account> accounts;
+
+
+    /**
+     * 构造方法
+     *
+     * @param capacity 初始容量
+     */
+    public PlayerGoldLedger(int capacity) {
+        this.accounts = new ConcurrentHashMap<>(capacity);
+    }
+
+
+    /**
+     * 变动金币, 余额越界直接拒绝
+     * 同一玩家的变动在哈希桶锁内完成, 实体金币和账本余额保持一致
+     *
+     * @param model 玩家实体
+     * @param delta 变动数量, 正数为追加, 负数为扣除
+     * @return 是否变动成功
+     */
+    public boolean change(@NonNull PlayerInfoModel model, long delta) {
+        boolean[] changed = {false};
+        accounts.compute(model.getUid(), (uid, account) -> {
+            if (account == null) {
+                Integer gold = model.getGold();
+                account = new Account(gold != null ? gold : 0);
+            }
+
+            long balance = account.balance + delta;
+            if (balance < 0 || balance > Integer.MAX_VALUE) {
+                return account;
+            }
+
+            // 余额在 int 区间内, 所以两次落地之间的增量也不会超过 int 区间
+            account.balance = balance;
+            account.pending.addAndGet(delta);
+            model.setGold((int) balance);
+            changed[0] = true;
+            return account;
+        });
+        return changed[0];
+    }
+
+
+    /**
+     * 汇总所有未落地的增量, 汇总之后增量仍然保留在账户内, 落地成功之后再扣除
+     * 落地期间账户增量不为 0, 所以不会被移除, 落地失败不需要退回
+     *
+     * @return 玩家ID -> 增量
+     */
+    public Map<Long, Long> collect() {
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Map.Entry<Long, Account> entry : accounts.entrySet()) {
+            long delta = entry.getValue().pending.get();
+            if (delta != 0L) {
+                deltas.put(entry.getKey(), delta);
+            }
+        }
+        return deltas;
+    }
+
+
+    /**
+     * 扣除已经落地的增量, 汇总之后的新变动保留等待下次落地
+     *
+     * @param deltas 玩家ID -> 已经落地的增量
+     */
+    public void settle(@NonNull Map<Long, Long> deltas) {
+        for (Map.Entry<Long, Long> entry : deltas.entrySet()) {
+            Account account = accounts.get(entry.getKey());
+            if (account != null) {
+                account.pending.addAndGet(-entry.getValue());
+            }
+        }
+    }
+
+
+    /**
+     * 移除已经全部落地的账户, 有未落地的增量则保留
+     *
+     * @param uid 玩家ID
+     * @return 是否已经移除
+     */
+    public boolean remove(@NonNull Long uid) {
+        return accounts.computeIfPresent(uid, (key, account) -> account.pending.get() == 0L ? null : account) == null;
+    }
+
+
+    /**
+     * 是否还有未落地的增量
+     *
+     * @return boolean
+     */
+    public boolean pending() {
+        for (Account account : accounts.values()) {
+            if (account.pending.get() != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * 账户数量
+     *
+     * @return int
+     */
+    public int size() {
+        return accounts.size();
+    }
+
+
+    /**
+     * 玩家账户
+     */
+    static final class Account {
+
+        /**
+         * 内存余额, 只在哈希桶锁内修改
+         */
+        long balance;
+
+        /**
+         * 未落地的增量
+         */
+        final AtomicLong pending = new AtomicLong();
+
+        Account(long balance) {
+            this.balance = balance;
+        }
+    }
+}
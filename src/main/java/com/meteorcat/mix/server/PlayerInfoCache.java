@@ -0,0 +1,241 @@
+package com.meteorcat.mix.server;
+
+import com.meteorcat.mix.model.PlayerInfoModel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 玩家实体缓存
+ * 基于 ConcurrentHashMap 分段加锁, 读取无锁; 记录访问时间用于空闲和容量淘汰
+ * 淘汰时候通过 CAS 把访问时间置为 EVICTED, 和读取刷新访问时间互斥: 淘汰之前被访问的实体保留, 淘汰之后的读取按未命中处理
+ */
+public class PlayerInfoCache {
+
+    /**
+     * 已经淘汰的访问时间标识
+     */
+    static final long EVICTED = -1L;
+
+    /**
+     * 缓存项
+     */
+    static final class Entry {
+
+        /**
+         * 玩家实体
+         */
+        final PlayerInfoModel model;
+
+        /**
+         * 最后访问时间, 淘汰之后为 EVICTED
+         */
+        final AtomicLong access;
+
+        Entry(PlayerInfoModel model, long access) {
+            this.model = model;
+            this.access = new AtomicLong(access);
+        }
+
+        /**
+         * 刷新访问时间, 每次访问都严格递增, 同一毫秒内的访问也能让淘汰候选失效
+         *
+         * @param now 当前时间
+         * @return 已经淘汰返回 false
+         */
+        boolean touch(long now) {
+            long current;
+            do {
+                current = access.get();
+                if (current == EVICTED) {
+                    return false;
+                }
+            } while (!access.compareAndSet(current, Math.max(now, current + 1)));
+            return true;
+        }
+    }
+
+
+    /**
+     * 缓存数据
+     */
+    final ConcurrentHashMap<Long, Entry> entries;
+
+
+    /**
+     * 构造方法
+     *
+     * @param capacity 初始容量
+     */
+    public PlayerInfoCache(int capacity) {
+        this.entries = new ConcurrentHashMap<>(capacity);
+    }
+
+
+    /**
+     * 获取实体并刷新访问时间
+     *
+     * @param uid 玩家ID
+     * @return PlayerInfoModel|null
+     */
+    public PlayerInfoModel get(Long uid) {
+        Entry entry = entries.get(uid);
+        if (entry == null || !entry.touch(System.currentTimeMillis())) {
+            return null;
+        }
+        return entry.model;
+    }
+
+
+    /**
+     * 写入实体
+     *
+     * @param uid   玩家ID
+     * @param model 玩家实体
+     */
+    public void put(Long uid, PlayerInfoModel model) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(uid);
+        if (entry != null && entry.model == model && entry.touch(now)) {
+            return;
+        }
+        entries.put(uid, new Entry(model, now));
+    }
+
+
+    /**
+     * 写入实体, 已经存在则保留原实体, 正在淘汰的实体按不存在处理
+     *
+     * @param uid   玩家ID
+     * @param model 玩家实体
+     * @return 最终缓存的实体
+     */
+    public PlayerInfoModel putIfAbsent(Long uid, PlayerInfoModel model) {
+        long now = System.currentTimeMillis();
+        return entries.compute(uid, (key, entry) -> entry != null && entry.touch(now) ? entry : new Entry(model, now)).model;
+    }
+
+
+    /**
+     * 获取实体, 不刷新访问时间
+     *
+     * @param uid 玩家ID
+     * @return PlayerInfoModel|null
+     */
+    public PlayerInfoModel peek(Long uid) {
+        Entry entry = entries.get(uid);
+        return entry == null || entry.access.get() == EVICTED ? null : entry.model;
+    }
+
+
+    /**
+     * 移除实体, 只有缓存的仍然是该实体并且 since 之后没有被访问过才会移除
+     *
+     * @param uid   玩家ID
+     * @param model 玩家实体
+     * @param since 淘汰判定时间, 之后有访问则保留
+     * @return boolean
+     */
+    public boolean remove(Long uid, PlayerInfoModel model, long since) {
+        Entry entry = entries.get(uid);
+        if (entry == null || entry.model != model) {
+            return false;
+        }
+        long access = entry.access.get();
+        if (access == EVICTED || access > since || !entry.access.compareAndSet(access, EVICTED)) {
+            return false;
+        }
+        entries.remove(uid, entry);
+        return true;
+    }
+
+
+    /**
+     * 缓存数量
+     *
+     * @return int
+     */
+    public int size() {
+        return entries.size();
+    }
+
+
+    /**
+     * 按访问时间从新到旧列出实体, 用于写入快照
+     *
+     * @return 玩家实体
+     */
+    public List<PlayerInfoModel> recent() {
+        List<Ranked> ranked = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            // 访问时间会被并发刷新, 先取快照再排序
+            ranked.add(new Ranked(entry.model, entry.access.get()));
+        }
+        ranked.sort(Comparator.comparingLong(Ranked::access).reversed());
+        List<PlayerInfoModel> models = new ArrayList<>(ranked.size());
+        for (Ranked item : ranked) {
+            models.add(item.model());
+        }
+        return models;
+    }
+
+
+    /**
+     * 检索需要淘汰的玩家
+     * 超过空闲时间的全部淘汰, 之后数量仍然超出上限则按访问时间从旧到新淘汰
+     *
+     * @param idleTimeout 空闲时间(毫秒)
+     * @param maxSize     容量上限
+     * @return 淘汰候选, 淘汰时候需要确认访问时间没有变化
+     */
+    public List<Candidate> expired(long idleTimeout, int maxSize) {
+        long now = System.currentTimeMillis();
+        List<Candidate> expired = new ArrayList<>();
+        List<Candidate> alive = new ArrayList<>();
+        for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+            // 访问时间会被并发刷新, 先取快照再排序
+            long access = entry.getValue().access.get();
+            if (access == EVICTED) {
+                continue;
+            }
+            if (now - access >= idleTimeout) {
+                expired.add(new Candidate(entry.getKey(), access));
+            } else {
+                alive.add(new Candidate(entry.getKey(), access));
+            }
+        }
+
+        int overflow = alive.size() - maxSize;
+        if (overflow > 0) {
+            alive.sort(Comparator.comparingLong(Candidate::access));
+            for (int i = 0; i < overflow; i++) {
+                expired.add(alive.get(i));
+            }
+        }
+        return expired;
+    }
+
+
+    /**
+     * 淘汰候选
+     *
+     * @param uid    玩家ID
+     * @param access 访问时间快照
+     */
+    record Candidate(Long uid, long access) {
+    }
+
+
+    /**
+     * 快照排序项
+     *
+     * @param model  玩家实体
+     * @param access 访问时间快照
+     */
+    record Ranked(PlayerInfoModel model, long access) {
+    }
+}
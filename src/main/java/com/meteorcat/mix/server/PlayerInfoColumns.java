@@ -0,0 +1,99 @@
+package com.meteorcat.mix.server;
+
+import com.meteorcat.mix.model.PlayerInfoModel;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * 玩家实体可更新字段, 按位标识需要落地的字段
+ * 金币按增量由 PlayerGoldLedger 落地, 不在整字段更新范围内
+ */
+public final class PlayerInfoColumns {
+
+    /**
+     * 玩家昵称
+     */
+    public static final int NICKNAME = 1;
+
+    /**
+     * 最后登录时间
+     */
+    public static final int UPDATE_TIME = 1 << 1;
+
+    /**
+     * 最后登录场景
+     */
+    public static final int LAST_SCENE = 1 << 2;
+
+    /**
+     * 全部字段
+     */
+    public static final int ALL = NICKNAME | UPDATE_TIME | LAST_SCENE;
+
+    /**
+     * 字段对应的数据库列, 下标为字段位序
+     */
+    static final String[] NAMES = {"nickname", "update_time", "last_scene"};
+
+    /**
+     * 按字段组合缓存的更新语句
+     */
+    static final String[] STATEMENTS = new String[ALL + 1];
+
+    static {
+        for (int columns = 1; columns <= ALL; columns++) {
+            StringBuilder sql = new StringBuilder("UPDATE tbl_player_info SET ");
+            boolean first = true;
+            for (int i = 0; i < NAMES.length; i++) {
+                if ((columns & (1 << i)) == 0) {
+                    continue;
+                }
+                if (!first) {
+                    sql.append(", ");
+                }
+                sql.append(NAMES[i]).append(" = ?");
+                first = false;
+            }
+            STATEMENTS[columns] = sql.append(" WHERE uid = ?").toString();
+        }
+    }
+
+
+    private PlayerInfoColumns() {
+    }
+
+
+    /**
+     * 获取只更新指定字段的语句
+     *
+     * @param columns 字段组合
+     * @return SQL
+     */
+    public static String statement(int columns) {
+        return STATEMENTS[columns & ALL];
+    }
+
+
+    /**
+     * 按字段组合写入更新参数, 顺序和 statement 保持一致
+     *
+     * @param statement 预编译语句
+     * @param columns   字段组合
+     * @param model     玩家实体
+     * @throws SQLException Error
+     */
+    public static void bind(PreparedStatement statement, int columns, PlayerInfoModel model) throws SQLException {
+        int index = 1;
+        if ((columns & NICKNAME) != 0) {
+            statement.setString(index++, model.getNickname());
+        }
+        if ((columns & UPDATE_TIME) != 0) {
+            statement.setLong(index++, model.getUpdateTime());
+        }
+        if ((columns & LAST_SCENE) != 0) {
+            statement.setInt(index++, model.getLastScene());
+        }
+        statement.setLong(index, model.getUid());
+    }
+}
@@ -2,39 +2,380 @@ package com.meteorcat.mix.server;
 
 import com.meteorcat.mix.model.PlayerInfoModel;
 import com.meteorcat.mix.model.repository.PlayerInfoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * 玩家信息服务
+ * 变动先写入内存和变动日志, 定时按字段和金币增量批量落地, 进程崩溃之后启动时候从日志恢复
+ * 正常退出时候写入内存玩家快照, 启动时候数据库纪元和写入版本一致则直接挂载到内存
+ */
 @Service
 public class PlayerInfoServer {
 
+    /**
+     * 日志句柄
+     */
+    final Logger logger = LoggerFactory.getLogger(PlayerInfoServer.class);
+
+    /**
+     * 日志水位行ID
+     */
+    static final int JOURNAL_ID = 1;
+
+    /**
+     * 读取日志水位
+     */
+    static final String JOURNAL_SELECT = "SELECT segment FROM tbl_player_journal WHERE id = ?";
+
+    /**
+     * 初始化日志水位, 同时生成数据库纪元
+     */
+    static final String JOURNAL_INSERT = "INSERT INTO tbl_player_journal (id, segment, epoch, revision) VALUES (?, 0, ?, 0)";
+
+    /**
+     * 更新日志水位, 同时递增写入版本
+     */
+    static final String JOURNAL_UPDATE = "UPDATE tbl_player_journal SET segment = ?, revision = revision + 1 WHERE id = ?";
+
+    /**
+     * 递增写入版本, 不经过落地的玩家数据写入使用
+     */
+    static final String JOURNAL_TOUCH = "UPDATE tbl_player_journal SET revision = revision + 1 WHERE id = ?";
+
+    /**
+     * 读取数据库纪元和写入版本
+     */
+    static final String JOURNAL_REVISION = "SELECT epoch, revision FROM tbl_player_journal WHERE id = ?";
+
     /**
      * 数据工厂
      */
     final PlayerInfoRepository repository;
 
+    /**
+     * 批量落地句柄
+     */
+    final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 落地事务, 玩家数据和日志水位一起提交
+     */
+    final TransactionTemplate transaction;
+
+    /**
+     * 玩家数据变动日志
+     */
+    final PlayerJournal journal;
+
+    /**
+     * 玩家缓存快照
+     */
+    final PlayerInfoSnapshot snapshot;
+
+    /**
+     * 水位记录是否在本次启动时候创建, 创建说明数据库已经重建, 快照一定过期
+     */
+    boolean fresh = false;
+
+    /**
+     * 变动和切换日志分段互斥: 变动写入内存和日志时候持有读锁, 落地取出变动和切换分段时候持有写锁
+     */
+    final ReadWriteLock lock = new ReentrantReadWriteLock();
+
     /**
      * 挂载内存玩家
      */
-    final HashMap<Long, PlayerInfoModel> players = new HashMap<>();
+    final PlayerInfoCache players;
 
     /**
-     * 需要线程同步的更新标识
+     * 玩家金币账本
      */
-    final List<Long> marks = new CopyOnWriteArrayList<>();
+    final PlayerGoldLedger ledger;
 
+    /**
+     * 内存玩家数量上限, 超出之后淘汰最久没有访问的玩家
+     */
+    @Value("${player.cache.max.size:10000}")
+    int maxSize = 10000;
 
     /**
-     * 构造方法
+     * 内存玩家空闲淘汰时间(毫秒)
+     */
+    @Value("${player.cache.idle.timeout:1800000}")
+    long idleTimeout = 1800000L;
+
+    /**
+     * 单批次落地数量
+     */
+    @Value("${player.flush.batch.size:200}")
+    int batchSize = 200;
+
+    /**
+     * 需要落地的玩家和字段, 每次落地整体替换
+     */
+    final AtomicReference<ConcurrentHashMap<Long, Integer>> marks = new AtomicReference<>(new ConcurrentHashMap<>());
+
+    /**
+     * 正在落地的玩家和字段, 落地期间淘汰检查需要同时查看
+     */
+    volatile Map<Long, Integer> flushing = Map.of();
+
+    /**
+     * 还有数据没有落地的离线玩家和离线时间, 落地之后再淘汰, 重新挂载时候移除
+     */
+    final Map<Long, Long> evicting = new ConcurrentHashMap<>();
+
+
+    /**
+     * 内存命中次数
+     */
+    final Counter hit;
+
+    /**
+     * 内存未命中次数
+     */
+    final Counter miss;
+
+    /**
+     * 落地耗时
+     */
+    final Timer flushTimer;
+
+    /**
+     * 字段落地行数
+     */
+    final Counter columnRows;
+
+    /**
+     * 金币增量落地行数
+     */
+    final Counter goldRows;
+
+    /**
+     * 落地失败次数
+     */
+    final Counter flushErrors;
+
+
+    /**
+     * 构造方法, 启动时候先重放没有落地的日志, 重放失败直接中断启动, 之后挂载快照玩家
      *
-     * @param repository 数据工厂
+     * @param repository         数据工厂
+     * @param jdbcTemplate       批量落地句柄
+     * @param transactionManager 事务管理
+     * @param journal            玩家数据变动日志
+     * @param snapshot           玩家缓存快照
+     * @param registry           监控指标
+     * @throws IOException 日志读取失败
      */
-    public PlayerInfoServer(PlayerInfoRepository repository) {
+    public PlayerInfoServer(
+            PlayerInfoRepository repository,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            PlayerJournal journal,
+            PlayerInfoSnapshot snapshot,
+            MeterRegistry registry
+    ) throws IOException {
         this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.journal = journal;
+        this.snapshot = snapshot;
+        this.players = new PlayerInfoCache(1024);
+        this.ledger = new PlayerGoldLedger(1024);
+
+        this.hit = Counter.builder("player.cache.requests")
+                .description("玩家实体检索次数")
+                .tag("result", "hit")
+                .register(registry);
+        this.miss = Counter.builder("player.cache.requests")
+                .description("玩家实体检索次数")
+                .tag("result", "miss")
+                .register(registry);
+        this.flushTimer = Timer.builder("player.flush")
+                .description("玩家数据落地耗时")
+                .register(registry);
+        this.columnRows = Counter.builder("player.flush.rows")
+                .description("玩家数据落地行数")
+                .tag("type", "columns")
+                .register(registry);
+        this.goldRows = Counter.builder("player.flush.rows")
+                .description("玩家数据落地行数")
+                .tag("type", "gold")
+                .register(registry);
+        this.flushErrors = Counter.builder("player.flush.errors")
+                .description("玩家数据落地失败次数")
+                .register(registry);
+        Gauge.builder("player.cache.size", players, PlayerInfoCache::size)
+                .description("内存玩家数量")
+                .register(registry);
+        Gauge.builder("player.dirty.size", marks, current -> current.get().size())
+                .description("等待落地的玩家数量")
+                .register(registry);
+        Gauge.builder("player.gold.accounts", ledger, PlayerGoldLedger::size)
+                .description("内存金币账户数量")
+                .register(registry);
+
+        recover();
+        warm();
+    }
+
+
+    /**
+     * 重放水位之后的日志分段, 和水位一起在同一个事务内落地
+     * 字段记录保存的是变动之后的值, 重复写入没有影响; 金币增量依赖水位保证只写入一次
+     *
+     * @throws IOException 日志读取失败
+     */
+    void recover() throws IOException {
+        long watermark = watermark();
+        Map<Long, PlayerInfoModel> models = new HashMap<>();
+        Map<Long, Integer> columns = new HashMap<>();
+        Map<Long, Long> deltas = new HashMap<>();
+        long segment = journal.replay(watermark, new PlayerJournal.Visitor() {
+            @Override
+            public void columns(long uid, int mask, String nickname, long updateTime, int lastScene) {
+                PlayerInfoModel model = models.computeIfAbsent(uid, key -> {
+                    PlayerInfoModel created = new PlayerInfoModel();
+                    created.setUid(key);
+                    return created;
+                });
+                if ((mask & PlayerInfoColumns.NICKNAME) != 0) {
+                    model.setNickname(nickname);
+                }
+                if ((mask & PlayerInfoColumns.UPDATE_TIME) != 0) {
+                    model.setUpdateTime(updateTime);
+                }
+                if ((mask & PlayerInfoColumns.LAST_SCENE) != 0) {
+                    model.setLastScene(lastScene);
+                }
+                columns.merge(uid, mask, (a, b) -> a | b);
+            }
+
+            @Override
+            public void gold(long uid, long delta) {
+                deltas.merge(uid, delta, Long::sum);
+            }
+        });
+
+        if (segment > watermark) {
+            Map<Integer, List<PlayerInfoModel>> groups = new HashMap<>();
+            columns.forEach((uid, mask) -> groups.computeIfAbsent(mask, key -> new ArrayList<>()).add(models.get(uid)));
+            commit(groups, deltas, segment);
+            logger.info("玩家日志恢复完成: 分段 {} -> {}, 字段: {}, 金币: {}", watermark, segment, columns.size(), deltas.size());
+        }
+        journal.truncate(segment);
+    }
+
+
+    /**
+     * 挂载快照玩家, 快照的数据库纪元和写入版本都和数据库一致才会挂载
+     * 挂载的玩家按正常访问处理, 没有登录的玩家空闲超时之后淘汰
+     */
+    void warm() {
+        if (fresh) {
+            snapshot.discard();
+            return;
+        }
+        long start = System.currentTimeMillis();
+        List<PlayerInfoModel> models = snapshot.read(revision());
+        for (PlayerInfoModel model : models) {
+            players.putIfAbsent(model.getUid(), model);
+        }
+        if (!models.isEmpty()) {
+            logger.info("挂载玩家快照: {}, 耗时: {}ms", models.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+
+    /**
+     * 写入内存玩家快照, 需要在最后一次落地之后调用
+     * 还有没有落地的变动时候不写入, 下次启动从数据库加载
+     */
+    public void snapshot() {
+        synchronized (ledger) {
+            lock.writeLock().lock();
+            try {
+                if (!marks.get().isEmpty() || ledger.pending()) {
+                    logger.warn("玩家数据没有全部落地, 跳过写入快照");
+                    return;
+                }
+                long start = System.currentTimeMillis();
+                PlayerInfoSnapshot.Revision revision = revision();
+                int count = snapshot.write(revision, players.recent());
+                logger.info("写入玩家快照: {}, 版本: {}, 耗时: {}ms", count, revision, System.currentTimeMillis() - start);
+            } catch (IOException | DataAccessException exception) {
+                logger.error("玩家快照写入失败: {}", exception.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+
+    /**
+     * 读取日志水位, 没有记录则初始化并且生成新的数据库纪元
+     *
+     * @return 已经落地的最后一个日志分段
+     */
+    long watermark() {
+        List<Long> rows = jdbcTemplate.queryForList(JOURNAL_SELECT, Long.class, JOURNAL_ID);
+        if (!rows.isEmpty()) {
+            return rows.get(0);
+        }
+        jdbcTemplate.update(JOURNAL_INSERT, JOURNAL_ID, UUID.randomUUID().toString());
+        fresh = true;
+        return 0L;
+    }
+
+
+    /**
+     * 读取数据库纪元和写入版本
+     *
+     * @return PlayerInfoSnapshot.Revision
+     */
+    PlayerInfoSnapshot.Revision revision() {
+        return jdbcTemplate.queryForObject(JOURNAL_REVISION,
+                (row, index) -> new PlayerInfoSnapshot.Revision(row.getString(1), row.getLong(2)), JOURNAL_ID);
+    }
+
+
+    /**
+     * 检索内存玩家实体, 不会访问数据库
+     *
+     * @param uid 玩家ID
+     * @return PlayerInfoModel|null
+     */
+    public PlayerInfoModel findCachedByUid(@NonNull Long uid) {
+        PlayerInfoModel model = players.get(uid);
+        if (model != null) {
+            hit.increment();
+        }
+        return model;
     }
 
 
@@ -48,25 +389,34 @@ public class PlayerInfoServer {
         // 检索内存实体
         PlayerInfoModel model = players.get(uid);
         if (model != null) {
+            hit.increment();
+            // 重新挂载的玩家不再等待淘汰
+            evicting.remove(uid);
             return model;
         }
 
         // 检索数据库
+        miss.increment();
+        // 并发加载时候以先写入的实体为准
         model = repository.findById(uid).orElse(null);
         if (model != null) {
-            players.put(uid, model);
+            model = players.putIfAbsent(uid, model);
         }
         return model;
     }
 
     /**
-     * 保存数据
+     * 保存数据, 同时递增写入版本让之前的快照过期
      *
      * @param model 玩家实体
      * @return PlayerInfoModel
      */
     public PlayerInfoModel save(@NonNull PlayerInfoModel model) {
-        return repository.save(model);
+        return transaction.execute(status -> {
+            PlayerInfoModel saved = repository.save(model);
+            jdbcTemplate.update(JOURNAL_TOUCH, JOURNAL_ID);
+            return saved;
+        });
     }
 
 
@@ -80,7 +430,7 @@ public class PlayerInfoServer {
         if (model.getUid() != null) {
             return null;
         }
-        PlayerInfoModel owner = repository.save(model);
+        PlayerInfoModel owner = save(model);
         Long uid = owner.getUid();
         players.put(uid, owner);
         return owner;
@@ -93,11 +443,35 @@ public class PlayerInfoServer {
      * @param uid 玩家ID
      */
     public void mark(@NonNull Long uid) {
-        if (!marks.contains(uid)) {
-            marks.add(uid);
+        mark(uid, PlayerInfoColumns.ALL);
+    }
+
+
+    /**
+     * 标识数据落地, 内存玩家的字段值同时写入变动日志
+     * 落地替换标识集合时候持有写锁, 所以标识和日志记录总是落在同一个分段
+     *
+     * @param uid     玩家ID
+     * @param columns 需要落地的字段, 参考 PlayerInfoColumns
+     */
+    public void mark(@NonNull Long uid, int columns) {
+        boolean journaled = true;
+        lock.readLock().lock();
+        try {
+            marks.get().merge(uid, columns, (a, b) -> a | b);
+            PlayerInfoModel model = players.peek(uid);
+            if (model != null) {
+                journaled = journal.columns(model, columns);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!journaled) {
+            unjournaled();
         }
     }
 
+
     /**
      * 更新内存数据并且标识数据落地
      *
@@ -105,27 +479,221 @@ public class PlayerInfoServer {
      * @param model 玩家实体
      */
     public void mark(@NonNull Long uid, @NonNull PlayerInfoModel model) {
+        mark(uid, model, PlayerInfoColumns.ALL);
+    }
+
+
+    /**
+     * 更新内存数据并且标识数据落地
+     *
+     * @param uid     玩家ID
+     * @param model   玩家实体
+     * @param columns 需要落地的字段, 参考 PlayerInfoColumns
+     */
+    public void mark(@NonNull Long uid, @NonNull PlayerInfoModel model, int columns) {
         players.put(uid, model);
-        mark(uid);
+        mark(uid, columns);
     }
 
+
+    /**
+     * 变动玩家金币, 只在内存累计增量等待落地
+     *
+     * @param model 玩家实体
+     * @param delta 变动数量, 正数为追加, 负数为扣除
+     * @return 余额越界返回 false
+     */
+    public boolean changeGold(@NonNull PlayerInfoModel model, long delta) {
+        boolean journaled;
+        lock.readLock().lock();
+        try {
+            if (!ledger.change(model, delta)) {
+                return false;
+            }
+            journaled = journal.gold(model.getUid(), delta);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!journaled) {
+            unjournaled();
+        }
+        return true;
+    }
+
+
+    /**
+     * 变动没有写入日志, 崩溃之后无法重放, 直接落地内存变动
+     * 日志恢复之前每次变动都会落地, 需要尽快处理磁盘问题
+     */
+    void unjournaled() {
+        flush();
+    }
+
+
     /**
      * 将内存落地到数据库
+     * 取出变动的同时切换日志分段, 字段, 金币增量和日志水位在同一个事务内提交, 成功之后删除已经落地的分段
+     * 失败的变动退回内存等待下次落地, 对应的分段保留到之后落地成功为止
+     * 金币增量落地成功之后才从账户扣除, 落地期间账户不会被淘汰
      */
     public void flush() {
-        // 如果没有任务跳过
-        if (marks.isEmpty()) return;
+        flushTimer.record(() -> {
+            synchronized (ledger) {
+                Map<Long, Integer> pending;
+                Map<Long, Long> deltas;
+                long segment;
+                lock.writeLock().lock();
+                try {
+                    pending = marks.getAndSet(new ConcurrentHashMap<>());
+                    flushing = pending;
+                    deltas = ledger.collect();
+                    segment = journal.rotate();
+                } finally {
+                    lock.writeLock().unlock();
+                }
 
-        // 获取标识准备落地
-        for (Long mark : marks) {
-            PlayerInfoModel model = findByUid(mark);
+                // 没有变动, 分段中只有相互抵消的金币增量
+                if (pending.isEmpty() && deltas.isEmpty()) {
+                    flushing = Map.of();
+                    journal.truncate(segment);
+                    return;
+                }
+
+                Map<Integer, List<PlayerInfoModel>> groups = group(pending);
+                try {
+                    commit(groups, deltas, segment);
+                    ledger.settle(deltas);
+                    groups.values().forEach(models -> columnRows.increment(models.size()));
+                    goldRows.increment(deltas.size());
+                } catch (DataAccessException | TransactionException exception) {
+                    flushErrors.increment();
+                    logger.error("玩家数据落地失败: {}", exception.getMessage());
+                    // 先退回标识再清空落地中的标识, 淘汰检查不会漏掉这些玩家
+                    pending.forEach((uid, columns) -> marks.get().merge(uid, columns, (a, b) -> a | b));
+                    return;
+                } finally {
+                    flushing = Map.of();
+                }
+                journal.truncate(segment);
+            }
+        });
+    }
+
+
+    /**
+     * 按字段组合分组, 落地不刷新访问时间, 也不计入命中统计
+     *
+     * @param pending 玩家ID -> 字段组合
+     * @return 字段组合 -> 玩家实体
+     */
+    Map<Integer, List<PlayerInfoModel>> group(Map<Long, Integer> pending) {
+        Map<Integer, List<PlayerInfoModel>> groups = new HashMap<>();
+        for (Map.Entry<Long, Integer> mark : pending.entrySet()) {
+            PlayerInfoModel model = players.peek(mark.getKey());
+            if (model == null) {
+                model = findByUid(mark.getKey());
+            }
             if (model != null) {
-                repository.save(model);
+                groups.computeIfAbsent(mark.getValue(), columns -> new ArrayList<>()).add(model);
             }
         }
+        return groups;
+    }
+
+
+    /**
+     * 在同一个事务内写入字段, 金币增量和日志水位
+     *
+     * @param groups  字段组合 -> 玩家实体
+     * @param deltas  玩家ID -> 金币增量
+     * @param segment 已经落地的最后一个日志分段
+     */
+    void commit(Map<Integer, List<PlayerInfoModel>> groups, Map<Long, Long> deltas, long segment) {
+        transaction.executeWithoutResult(status -> {
+            for (Map.Entry<Integer, List<PlayerInfoModel>> group : groups.entrySet()) {
+                write(group.getKey(), group.getValue());
+            }
+            if (!deltas.isEmpty()) {
+                List<Map.Entry<Long, Long>> entries = new ArrayList<>(deltas.entrySet());
+                jdbcTemplate.batchUpdate(PlayerGoldLedger.STATEMENT, entries, batchSize, (statement, entry) -> {
+                    statement.setLong(1, entry.getValue());
+                    statement.setLong(2, entry.getKey());
+                });
+            }
+            jdbcTemplate.update(JOURNAL_UPDATE, segment, JOURNAL_ID);
+        });
+    }
+
+
+    /**
+     * 批量更新指定字段
+     *
+     * @param columns 字段组合
+     * @param models  玩家实体
+     */
+    void write(int columns, List<PlayerInfoModel> models) {
+        jdbcTemplate.batchUpdate(
+                PlayerInfoColumns.statement(columns),
+                models,
+                batchSize,
+                (statement, model) -> PlayerInfoColumns.bind(statement, columns, model)
+        );
+    }
+
+
+    /**
+     * 淘汰空闲和超出上限的内存玩家, 以及之前因为数据没有落地而保留的离线玩家
+     * 淘汰候选从判定到移除期间被访问过则保留
+     */
+    public void evict() {
+        int evicted = 0;
+        for (PlayerInfoCache.Candidate candidate : players.expired(idleTimeout, maxSize)) {
+            if (evict(candidate.uid(), candidate.access())) {
+                evicted++;
+            }
+        }
+        for (Map.Entry<Long, Long> entry : evicting.entrySet()) {
+            if (evict(entry.getKey(), entry.getValue())) {
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            logger.debug("淘汰内存玩家: {}, 剩余: {}", evicted, players.size());
+        }
+    }
+
+
+    /**
+     * 淘汰内存玩家, 不访问数据库
+     * 有未落地的字段或者金币增量则保留到定时落地之后再淘汰, 数据只通过落地事务和日志水位一起写入
+     * since 之后玩家被重新访问(如重新登录)则保留, 判定和移除通过访问时间 CAS 互斥
+     *
+     * @param uid   玩家ID
+     * @param since 淘汰判定时间, 之后有访问则保留
+     * @return 是否已经淘汰
+     */
+    public boolean evict(@NonNull Long uid, long since) {
+        PlayerInfoModel model = players.peek(uid);
+        if (model == null) {
+            evicting.remove(uid);
+            return true;
+        }
+
+        // 先检查落地中的标识再检查待落地标识, 和落地失败退回标识的顺序相反
+        boolean dirty;
+        lock.readLock().lock();
+        try {
+            dirty = flushing.containsKey(uid) || marks.get().containsKey(uid);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (dirty || !ledger.remove(uid)) {
+            evicting.merge(uid, since, Math::max);
+            return false;
+        }
 
-        // 完成任务清空标识
-        marks.clear();
+        evicting.remove(uid);
+        return players.remove(uid, model, since);
     }
 
 }
@@ -0,0 +1,196 @@
+package com.meteorcat.mix.server;
+
+import com.meteorcat.mix.model.PlayerInfoModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 玩家缓存快照
+ * 退出时候在最后一次落地之后写入内存玩家, 启动时候直接挂载到内存, 避免重启之后登录全部访问数据库
+ * 快照记录写入时候的数据库纪元和写入版本, 数据库重建或者之后还有写入都会不一致, 快照已经过期直接丢弃
+ * 快照只使用一次, 读取之后删除, 防止之后没有写入快照的退出再次加载旧数据
+ * 文件格式: [int 标识][byte 版本][UTF 纪元][long 写入版本][int 数量][玩家...][int CRC32C]
+ * 玩家格式: [long 玩家ID][boolean 有昵称][UTF 昵称][int 金币][long 创建时间][long 登录时间][int 场景]
+ */
+@Component
+public class PlayerInfoSnapshot {
+
+    /**
+     * 文件标识
+     */
+    final static int MAGIC = 0x504c5953;
+
+    /**
+     * 格式版本
+     */
+    final static byte VERSION = 2;
+
+    /**
+     * 日志句柄
+     */
+    final Logger logger = LoggerFactory.getLogger(PlayerInfoSnapshot.class);
+
+    /**
+     * 快照文件, 为 null 代表关闭快照
+     */
+    final Path file;
+
+
+    /**
+     * 构造方法
+     *
+     * @param path 快照文件, 为空关闭快照
+     */
+    public PlayerInfoSnapshot(@Value("${player.snapshot.path:journal/player.snapshot}") String path) {
+        this.file = path == null || path.isBlank() ? null : Paths.get(path);
+    }
+
+
+    /**
+     * 写入快照, 先写入临时文件再替换, 写入中断不会破坏之前的快照
+     *
+     * @param revision 数据库纪元和写入版本
+     * @param models   玩家实体
+     * @return 写入数量
+     * @throws IOException Error
+     */
+    public int write(Revision revision, Collection<PlayerInfoModel> models) throws IOException {
+        if (file == null) {
+            return 0;
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile())) {
+            CRC32C crc = new CRC32C();
+            DataOutputStream output = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(stream), crc));
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeUTF(revision.epoch());
+            output.writeLong(revision.revision());
+            output.writeInt(models.size());
+            for (PlayerInfoModel model : models) {
+                String nickname = model.getNickname();
+                output.writeLong(model.getUid());
+                output.writeBoolean(nickname != null);
+                output.writeUTF(nickname != null ? nickname : "");
+                output.writeInt(model.getGold() != null ? model.getGold() : 0);
+                output.writeLong(model.getCreateTime() != null ? model.getCreateTime() : 0L);
+                output.writeLong(model.getUpdateTime() != null ? model.getUpdateTime() : 0L);
+                output.writeInt(model.getLastScene() != null ? model.getLastScene() : 0);
+            }
+            output.flush();
+
+            // 校验值不计入校验, 直接写入底层
+            DataOutputStream tail = new DataOutputStream(stream);
+            tail.writeInt((int) crc.getValue());
+            stream.getFD().sync();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return models.size();
+    }
+
+
+    /**
+     * 读取并删除快照, 快照不存在, 损坏或者纪元和写入版本不一致返回空列表
+     *
+     * @param revision 数据库当前的纪元和写入版本
+     * @return 玩家实体
+     */
+    public List<PlayerInfoModel> read(Revision revision) {
+        if (file == null) {
+            return List.of();
+        }
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
+            CRC32C crc = new CRC32C();
+            DataInputStream input = new DataInputStream(new CheckedInputStream(stream, crc));
+            if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+                logger.warn("玩家快照格式不支持: {}", file);
+                return List.of();
+            }
+            Revision written = new Revision(input.readUTF(), input.readLong());
+            if (!written.equals(revision)) {
+                logger.info("玩家快照已经过期: 快照 {}, 数据库 {}", written, revision);
+                return List.of();
+            }
+
+            int count = input.readInt();
+            List<PlayerInfoModel> models = new ArrayList<>(Math.max(0, Math.min(count, 1 << 16)));
+            for (int i = 0; i < count; i++) {
+                PlayerInfoModel model = new PlayerInfoModel();
+                model.setUid(input.readLong());
+                boolean named = input.readBoolean();
+                String nickname = input.readUTF();
+                model.setNickname(named ? nickname : null);
+                model.setGold(input.readInt());
+                model.setCreateTime(input.readLong());
+                model.setUpdateTime(input.readLong());
+                model.setLastScene(input.readInt());
+                models.add(model);
+            }
+
+            int value = (int) crc.getValue();
+            if (new DataInputStream(stream).readInt() != value) {
+                logger.warn("玩家快照校验失败: {}", file);
+                return List.of();
+            }
+            return models;
+        } catch (NoSuchFileException exception) {
+            return List.of();
+        } catch (IOException exception) {
+            logger.warn("玩家快照读取失败: {}", exception.getMessage());
+            return List.of();
+        } finally {
+            discard();
+        }
+    }
+
+
+    /**
+     * 删除快照
+     */
+    public void discard() {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException exception) {
+            logger.warn("玩家快照删除失败: {}", exception.getMessage());
+        }
+    }
+
+
+    /**
+     * 数据库纪元和写入版本
+     *
+     * @param epoch    数据库纪元, 创建水位记录时候随机生成
+     * @param revision 写入版本, 每次写入玩家数据递增
+     */
+    public record Revision(String epoch, long revision) {
+    }
+}
@@ -0,0 +1,612 @@
+package com.meteorcat.mix.server;
+
+import com.meteorcat.mix.model.PlayerInfoModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 玩家数据变动日志
+ * 两次落地之间的变动按记录追加到内存映射文件, 进程崩溃之后启动时候重放到数据库
+ * 日志按分段文件存储, 落地时候切换分段, 落地成功之后已经落地的分段保留一个作为备用, 下次切换直接复用, 其余删除
+ * 记录格式: [int 数据长度][int CRC32C(分段ID + 数据)][byte 类型][long 玩家ID][数据]
+ * 复用的分段残留旧记录, 每条记录之后写入结束标识, 校验值包含分段ID, 旧记录不会被重放
+ * 写入失败时候标记为不可用, 调用方需要立即落地内存变动
+ * fsync:
+ *   大于 0: 按间隔(毫秒)批量刷盘, 进程崩溃不丢数据, 断电最多丢失一个间隔
+ *   0: 每条记录都刷盘
+ *   小于 0: 交给操作系统刷盘
+ */
+@Component
+public class PlayerJournal implements AutoCloseable {
+
+    /**
+     * 字段变动记录: [byte 字段组合][long 登录时间][int 场景][short 昵称长度][昵称]
+     */
+    final static byte COLUMNS = 1;
+
+    /**
+     * 金币增量记录: [long 增量]
+     */
+    final static byte GOLD = 2;
+
+    /**
+     * 记录头长度
+     */
+    final static int HEADER = 8;
+
+    /**
+     * 分段文件名
+     */
+    final static Pattern FILE = Pattern.compile("player-(\\d+)\\.journal");
+
+    /**
+     * 备用分段文件名, 不会被重放
+     */
+    final static String SPARE = "player-spare.journal";
+
+    /**
+     * 日志句柄
+     */
+    final Logger logger = LoggerFactory.getLogger(PlayerJournal.class);
+
+    /**
+     * 日志目录
+     */
+    final Path path;
+
+    /**
+     * 分段文件大小
+     */
+    final int segmentSize;
+
+    /**
+     * 刷盘间隔(毫秒)
+     */
+    final long fsync;
+
+    /**
+     * 定时刷盘, 不按间隔刷盘时为 null
+     */
+    final ScheduledExecutorService syncer;
+
+    /**
+     * 记录编码缓冲区, 只在锁内使用
+     */
+    final ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+    /**
+     * 记录校验, 只在锁内使用
+     */
+    final CRC32C crc = new CRC32C();
+
+    /**
+     * 校验值的分段ID部分, 只在锁内使用
+     */
+    final ByteBuffer seed = ByteBuffer.allocate(Long.BYTES);
+
+    /**
+     * 写入字节数
+     */
+    final Counter written;
+
+    /**
+     * 刷盘耗时
+     */
+    final Timer forced;
+
+    /**
+     * 写入失败次数
+     */
+    final Counter failed;
+
+    /**
+     * 复用分段次数
+     */
+    final Counter recycled;
+
+    /**
+     * 最近一次写入是否成功, 失败之后直到成功打开分段为止都不可用
+     */
+    volatile boolean healthy = true;
+
+    /**
+     * 当前分段ID, 没有打开分段时为下一个分段ID
+     */
+    long id;
+
+    /**
+     * 当前分段映射, 切换分段之后为 null, 下次写入时候创建
+     */
+    MappedByteBuffer buffer = null;
+
+    /**
+     * 当前分段已经刷盘的位置
+     */
+    int synced = 0;
+
+
+    /**
+     * 构造方法
+     *
+     * @param path        日志目录
+     * @param segmentSize 分段文件大小
+     * @param fsync       刷盘间隔(毫秒)
+     * @param registry    监控指标
+     * @throws IOException 目录无法创建
+     */
+    public PlayerJournal(
+            @Value("${player.journal.path:journal}") String path,
+            @Value("${player.journal.segment.size:67108864}") int segmentSize,
+            @Value("${player.journal.fsync:1000}") long fsync,
+            MeterRegistry registry
+    ) throws IOException {
+        this.path = Paths.get(path);
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        Files.createDirectories(this.path);
+        List<Long> segments = segments();
+        this.id = segments.isEmpty() ? 1L : segments.get(segments.size() - 1) + 1;
+
+        this.written = Counter.builder("player.journal.bytes")
+                .description("玩家日志写入字节数")
+                .register(registry);
+        this.forced = Timer.builder("player.journal.fsync")
+                .description("玩家日志刷盘耗时")
+                .register(registry);
+        this.failed = Counter.builder("player.journal.failed")
+                .description("玩家日志写入失败次数")
+                .register(registry);
+        this.recycled = Counter.builder("player.journal.recycled")
+                .description("玩家日志复用分段次数")
+                .register(registry);
+        Gauge.builder("player.journal.healthy", this, journal -> journal.healthy ? 1 : 0)
+                .description("玩家日志是否可用")
+                .register(registry);
+
+        if (fsync > 0) {
+            this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "player-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.syncer.scheduleWithFixedDelay(this::sync, fsync, fsync, TimeUnit.MILLISECONDS);
+        } else {
+            this.syncer = null;
+        }
+    }
+
+
+    /**
+     * 记录字段变动, 同时记录变动之后的字段值
+     *
+     * @param model   玩家实体
+     * @param columns 字段组合, 参考 PlayerInfoColumns
+     * @return 写入失败返回 false
+     */
+    public synchronized boolean columns(PlayerInfoModel model, int columns) {
+        String nickname = model.getNickname();
+        byte[] name = nickname != null ? nickname.getBytes(StandardCharsets.UTF_8) : null;
+        ByteBuffer data = begin(COLUMNS, model.getUid(), 15 + (name != null ? name.length : 0));
+        data.put((byte) columns);
+        data.putLong(model.getUpdateTime() != null ? model.getUpdateTime() : 0L);
+        data.putInt(model.getLastScene() != null ? model.getLastScene() : 0);
+        data.putShort((short) (name != null ? name.length : -1));
+        if (name != null) {
+            data.put(name);
+        }
+        return append(data);
+    }
+
+
+    /**
+     * 记录金币增量
+     *
+     * @param uid   玩家ID
+     * @param delta 增量
+     * @return 写入失败返回 false
+     */
+    public synchronized boolean gold(long uid, long delta) {
+        ByteBuffer data = begin(GOLD, uid, 8);
+        data.putLong(delta);
+        return append(data);
+    }
+
+
+    /**
+     * 开始编码记录
+     *
+     * @param type   记录类型
+     * @param uid    玩家ID
+     * @param length 数据长度
+     * @return 编码缓冲区
+     */
+    ByteBuffer begin(byte type, long uid, int length) {
+        ByteBuffer data = length + 9 <= scratch.capacity() ? scratch.clear() : ByteBuffer.allocate(length + 9);
+        return data.put(type).putLong(uid);
+    }
+
+
+    /**
+     * 追加记录, 当前分段写不下则切换到新分段
+     * 分段创建失败标记为不可用, 记录没有写入
+     *
+     * @param data 编码完成的记录
+     * @return 写入失败返回 false
+     */
+    boolean append(ByteBuffer data) {
+        data.flip();
+        int length = data.remaining();
+        try {
+            // 保留 4 字节结束标识
+            if (buffer == null || buffer.remaining() < HEADER + length + 4) {
+                next();
+            }
+        } catch (IOException exception) {
+            failed.increment();
+            if (healthy) {
+                healthy = false;
+                logger.error("玩家日志分段创建失败, 变动改为直接落地: {}", exception.getMessage());
+            }
+            return false;
+        }
+        if (!healthy) {
+            healthy = true;
+            logger.info("玩家日志恢复写入: {}", name(id));
+        }
+
+        buffer.putInt(length).putInt(checksum(id, data)).put(data);
+        buffer.putInt(buffer.position(), 0);
+        written.increment(HEADER + length);
+        if (fsync == 0) {
+            force(buffer, synced, buffer.position());
+            synced = buffer.position();
+        }
+        return true;
+    }
+
+
+    /**
+     * 记录校验值, 包含分段ID
+     *
+     * @param segment 分段ID
+     * @param data    记录数据
+     * @return int
+     */
+    int checksum(long segment, ByteBuffer data) {
+        crc.reset();
+        crc.update(seed.clear().putLong(segment).flip());
+        crc.update(data.duplicate());
+        return (int) crc.getValue();
+    }
+
+
+    /**
+     * 日志是否可用, 不可用时候变动没有写入日志
+     *
+     * @return boolean
+     */
+    public boolean healthy() {
+        return healthy;
+    }
+
+
+    /**
+     * 打开下一个分段, 有备用分段直接复用
+     *
+     * @throws IOException Error
+     */
+    void next() throws IOException {
+        if (buffer != null) {
+            seal();
+        }
+        Path file = path.resolve(name(id));
+        Path spare = path.resolve(SPARE);
+        boolean reuse = false;
+        if (Files.exists(spare)) {
+            try {
+                Files.move(spare, file, StandardCopyOption.REPLACE_EXISTING);
+                reuse = true;
+            } catch (IOException exception) {
+                logger.warn("玩家日志备用分段复用失败: {}", exception.getMessage());
+            }
+        }
+
+        try (FileChannel channel = reuse
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        if (reuse) {
+            // 清除残留记录的第一条长度
+            buffer.putInt(0, 0);
+            recycled.increment();
+        }
+        synced = 0;
+    }
+
+
+    /**
+     * 关闭当前分段, 下次写入时候创建新分段
+     */
+    void seal() {
+        if (fsync >= 0) {
+            force(buffer, synced, buffer.position());
+        }
+        buffer = null;
+        synced = 0;
+        id++;
+    }
+
+
+    /**
+     * 切换分段, 之后的记录写入新分段
+     * 调用方需要保证切换期间没有新的变动, 切换之前的变动全部在返回的分段之内
+     *
+     * @return 已经关闭的最后一个分段ID
+     */
+    public synchronized long rotate() {
+        if (buffer == null) {
+            return id - 1;
+        }
+        long sealed = id;
+        seal();
+        return sealed;
+    }
+
+
+    /**
+     * 删除已经落地的分段, 保留一个完整大小的分段作为备用
+     *
+     * @param watermark 已经落地的最后一个分段ID
+     */
+    public void truncate(long watermark) {
+        try {
+            for (Long segment : segments()) {
+                if (segment <= watermark) {
+                    Path file = path.resolve(name(segment));
+                    if (!recycle(file)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException exception) {
+            logger.warn("玩家日志分段删除失败: {}", exception.getMessage());
+        }
+    }
+
+
+    /**
+     * 已经落地的分段改为备用分段, 已经有备用分段或者大小不一致则放弃
+     *
+     * @param file 分段文件
+     * @return 是否已经改为备用
+     */
+    synchronized boolean recycle(Path file) {
+        Path spare = path.resolve(SPARE);
+        try {
+            if (Files.exists(spare) || Files.size(file) != segmentSize) {
+                return false;
+            }
+            Files.move(file, spare, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+
+    /**
+     * 重放没有落地的分段, 遇到不完整的记录停止读取该分段
+     *
+     * @param watermark 已经落地的最后一个分段ID
+     * @param visitor   记录处理
+     * @return 重放的最后一个分段ID, 没有需要重放的分段返回 watermark
+     * @throws IOException Error
+     */
+    public synchronized long replay(long watermark, Visitor visitor) throws IOException {
+        long last = watermark;
+        for (Long segment : segments()) {
+            if (segment <= watermark || (buffer != null && segment == id)) {
+                continue;
+            }
+            replay(path.resolve(name(segment)), segment, visitor);
+            last = segment;
+        }
+
+        // 新分段ID必须大于已经落地的分段, 否则重启之后会被跳过
+        if (buffer == null) {
+            id = Math.max(id, last + 1);
+        }
+        return last;
+    }
+
+
+    /**
+     * 重放单个分段
+     *
+     * @param file    分段文件
+     * @param segment 分段ID
+     * @param visitor 记录处理
+     * @throws IOException Error
+     */
+    void replay(Path file, long segment, Visitor visitor) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int count = 0;
+        while (data.remaining() >= HEADER) {
+            int length = data.getInt();
+            int value = data.getInt();
+            if (length <= 0 || length > data.remaining()) {
+                break;
+            }
+
+            ByteBuffer record = data.slice(data.position(), length);
+            data.position(data.position() + length);
+            if (checksum(segment, record) != value) {
+                logger.warn("玩家日志记录校验失败: {}, 位置: {}", file, data.position() - length - HEADER);
+                break;
+            }
+
+            byte type = record.get();
+            long uid = record.getLong();
+            if (type == COLUMNS) {
+                int columns = record.get();
+                long updateTime = record.getLong();
+                int lastScene = record.getInt();
+                short size = record.getShort();
+                String nickname = null;
+                if (size >= 0) {
+                    byte[] name = new byte[size];
+                    record.get(name);
+                    nickname = new String(name, StandardCharsets.UTF_8);
+                }
+                visitor.columns(uid, columns, nickname, updateTime, lastScene);
+            } else if (type == GOLD) {
+                visitor.gold(uid, record.getLong());
+            }
+            count++;
+        }
+        logger.info("重放玩家日志: {}, 记录: {}", file, count);
+    }
+
+
+    /**
+     * 按间隔批量刷盘, 刷盘在锁外执行不阻塞写入
+     */
+    void sync() {
+        MappedByteBuffer target;
+        int from;
+        int to;
+        synchronized (this) {
+            if (buffer == null || buffer.position() == synced) {
+                return;
+            }
+            target = buffer;
+            from = synced;
+            to = buffer.position();
+            synced = to;
+        }
+        force(target, from, to);
+    }
+
+
+    /**
+     * 刷盘指定区间
+     *
+     * @param target 分段映射
+     * @param from   起始位置
+     * @param to     结束位置
+     */
+    void force(MappedByteBuffer target, int from, int to) {
+        if (to <= from) {
+            return;
+        }
+        long start = System.nanoTime();
+        target.force(from, to - from);
+        forced.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * 现有分段ID, 从小到大排序
+     *
+     * @return List
+     * @throws IOException Error
+     */
+    List<Long> segments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(path)) {
+            files.forEach(file -> {
+                Matcher matcher = FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    segments.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        segments.sort(Long::compare);
+        return segments;
+    }
+
+
+    /**
+     * 分段文件名
+     *
+     * @param segment 分段ID
+     * @return String
+     */
+    static String name(long segment) {
+        return String.format("player-%016d.journal", segment);
+    }
+
+
+    /**
+     * 退出时候刷盘
+     */
+    @Override
+    public synchronized void close() {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        if (buffer != null) {
+            force(buffer, synced, buffer.position());
+            synced = buffer.position();
+        }
+    }
+
+
+    /**
+     * 日志记录处理
+     */
+    public interface Visitor {
+
+        /**
+         * 字段变动
+         *
+         * @param uid        玩家ID
+         * @param columns    字段组合
+         * @param nickname   昵称
+         * @param updateTime 登录时间
+         * @param lastScene  场景
+         */
+        void columns(long uid, int columns, String nickname, long updateTime, int lastScene);
+
+
+        /**
+         * 金币增量
+         *
+         * @param uid   玩家ID
+         * @param delta 增量
+         */
+        void gold(long uid, long delta);
+    }
+}
@@ -0,0 +1,11 @@
+package com.meteorcat.mix.table;
+
+/**
+ * 全部配置表快照, 构建之后不再修改, 重载时候整体替换
+ *
+ * @param version    加载版本, 每次重载递增
+ * @param scene      场景定义表
+ * @param experience 经验等级表
+ */
+public record ConfigTables(long version, SceneTable scene, ExperienceTable experience) {
+}
@@ -0,0 +1,123 @@
+package com.meteorcat.mix.table;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 经验等级表, 对应 经验等级@Experience.csv
+ * 等级必须从 1 开始连续递增, 预先计算累计经验, 按累计经验二分查询等级
+ */
+public final class ExperienceTable {
+
+    /**
+     * 表文件名称
+     */
+    public static final String NAME = "Experience";
+
+    /**
+     * 每级升级所需经验, 下标为 等级 - 1
+     */
+    final int[] exp;
+
+    /**
+     * 累计经验, 下标 N 代表升到 N + 2 级所需的总经验
+     */
+    final long[] cumulative;
+
+
+    /**
+     * 构造方法
+     *
+     * @param exp        每级升级所需经验
+     * @param cumulative 累计经验
+     */
+    ExperienceTable(int[] exp, long[] cumulative) {
+        this.exp = exp;
+        this.cumulative = cumulative;
+    }
+
+
+    /**
+     * 最大等级
+     *
+     * @return int
+     */
+    public int maxLevel() {
+        return exp.length;
+    }
+
+
+    /**
+     * 指定等级升级所需经验
+     *
+     * @param level 等级
+     * @return int, 等级不存在返回 0
+     */
+    public int exp(int level) {
+        return level >= 1 && level <= exp.length ? exp[level - 1] : 0;
+    }
+
+
+    /**
+     * 到达指定等级所需的总经验
+     *
+     * @param level 等级
+     * @return long
+     */
+    public long total(int level) {
+        if (level <= 1) {
+            return 0L;
+        }
+        return cumulative[Math.min(level, exp.length) - 2];
+    }
+
+
+    /**
+     * 按总经验查询等级, 超出最大等级返回最大等级
+     *
+     * @param total 总经验
+     * @return int
+     */
+    public int level(long total) {
+        if (exp.length == 0) {
+            return 0;
+        }
+
+        // 查询第一个大于总经验的累计经验位置
+        int index = Arrays.binarySearch(cumulative, total);
+        int level = index >= 0 ? index + 2 : -index;
+        return Math.min(level, exp.length);
+    }
+
+
+    /**
+     * 从 CSV 表构建
+     *
+     * @param reader 表读取
+     * @return ExperienceTable
+     * @throws IOException 数据格式错误
+     */
+    public static ExperienceTable build(TableReader reader) throws IOException {
+        int keyColumn = reader.column("key");
+        int expColumn = reader.column("exp");
+
+        int[] exp = new int[reader.size()];
+        long[] cumulative = new long[reader.size()];
+        long total = 0L;
+        for (int row = 0; row < reader.size(); row++) {
+            int level = reader.getInt(row, keyColumn);
+            if (level != row + 1) {
+                throw new IOException("experience level not continuous: " + level);
+            }
+
+            int value = reader.getInt(row, expColumn);
+            if (value <= 0) {
+                throw new IOException("experience must be positive: " + level);
+            }
+            exp[row] = value;
+            total += value;
+            cumulative[row] = total;
+        }
+        return new ExperienceTable(exp, cumulative);
+    }
+}
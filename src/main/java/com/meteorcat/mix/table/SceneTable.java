@@ -0,0 +1,150 @@
+package com.meteorcat.mix.table;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 场景定义表, 对应 场景定义@Scene.csv
+ * 场景ID是较小的整数, 直接按ID作为数组下标查询
+ */
+public final class SceneTable {
+
+    /**
+     * 表文件名称
+     */
+    public static final String NAME = "Scene";
+
+    /**
+     * 场景ID上限, 防止配置错误构建过大的数组
+     */
+    static final int KEY_LIMIT = 1 << 16;
+
+    /**
+     * 按场景ID索引的场景
+     */
+    final Scene[] scenes;
+
+    /**
+     * 场景标识 -> 场景
+     */
+    final Map<String, Scene> flags;
+
+
+    /**
+     * 构造方法
+     *
+     * @param scenes 按场景ID索引的场景
+     * @param flags  场景标识 -> 场景
+     */
+    SceneTable(Scene[] scenes, Map<String, Scene> flags) {
+        this.scenes = scenes;
+        this.flags = flags;
+    }
+
+
+    /**
+     * 按场景ID查询
+     *
+     * @param key 场景ID
+     * @return Scene|null
+     */
+    public Scene get(int key) {
+        return key >= 0 && key < scenes.length ? scenes[key] : null;
+    }
+
+
+    /**
+     * 按场景标识查询
+     *
+     * @param flag 场景标识, 如 player_home
+     * @return Scene|null
+     */
+    public Scene get(String flag) {
+        return flags.get(flag);
+    }
+
+
+    /**
+     * 按场景标识查询场景ID
+     *
+     * @param flag         场景标识
+     * @param defaultValue 场景不存在时候的默认值
+     * @return int
+     */
+    public int key(String flag, int defaultValue) {
+        Scene scene = flags.get(flag);
+        return scene != null ? scene.key() : defaultValue;
+    }
+
+
+    /**
+     * 场景数量
+     *
+     * @return int
+     */
+    public int size() {
+        return flags.size();
+    }
+
+
+    /**
+     * 从 CSV 表构建
+     *
+     * @param reader 表读取
+     * @return SceneTable
+     * @throws IOException 数据格式错误
+     */
+    public static SceneTable build(TableReader reader) throws IOException {
+        int keyColumn = reader.column("key");
+        int nameColumn = reader.column("name");
+        int flagColumn = reader.column("flag");
+        int pathColumn = reader.column("path");
+        int sizeColumn = reader.column("size");
+
+        Scene[] scenes = new Scene[0];
+        Map<String, Scene> flags = new HashMap<>(reader.size() * 2);
+        for (int row = 0; row < reader.size(); row++) {
+            int key = reader.getInt(row, keyColumn);
+            if (key < 0 || key >= KEY_LIMIT) {
+                throw new IOException("scene key out of range: " + key);
+            }
+
+            int[] size = reader.getIntArray(row, sizeColumn);
+            Scene scene = new Scene(
+                    key,
+                    reader.getString(row, nameColumn),
+                    reader.getString(row, flagColumn),
+                    reader.getString(row, pathColumn),
+                    size.length > 0 ? size[0] : 0,
+                    size.length > 1 ? size[1] : 0
+            );
+
+            if (key >= scenes.length) {
+                Scene[] expand = new Scene[key + 1];
+                System.arraycopy(scenes, 0, expand, 0, scenes.length);
+                scenes = expand;
+            }
+            if (scenes[key] != null || flags.containsKey(scene.flag())) {
+                throw new IOException("scene duplicate: " + key + " " + scene.flag());
+            }
+            scenes[key] = scene;
+            flags.put(scene.flag(), scene);
+        }
+        return new SceneTable(scenes, Map.copyOf(flags));
+    }
+
+
+    /**
+     * 场景
+     *
+     * @param key    场景ID
+     * @param name   场景名称
+     * @param flag   场景标识
+     * @param path   客户端资源场景
+     * @param width  地图宽度
+     * @param height 地图高度
+     */
+    public record Scene(int key, String name, String flag, String path, int width, int height) {
+    }
+}
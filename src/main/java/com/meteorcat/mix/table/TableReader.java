@@ -0,0 +1,264 @@
+package com.meteorcat.mix.table;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 策划 CSV 表读取
+ * 前三行分别为: 字段说明, 字段名, 字段类型, 之后每行为一条配置
+ */
+public final class TableReader {
+
+    /**
+     * 表头行数
+     */
+    public static final int HEADER_ROWS = 3;
+
+    /**
+     * 表名称, 用于错误提示
+     */
+    final String name;
+
+    /**
+     * 字段名 -> 列下标
+     */
+    final Map<String, Integer> columns;
+
+    /**
+     * 字段类型, 下标和列一致
+     */
+    final String[] types;
+
+    /**
+     * 配置行
+     */
+    final List<String[]> rows;
+
+
+    /**
+     * 构造方法
+     *
+     * @param name    表名称
+     * @param columns 字段名 -> 列下标
+     * @param types   字段类型
+     * @param rows    配置行
+     */
+    TableReader(String name, Map<String, Integer> columns, String[] types, List<String[]> rows) {
+        this.name = name;
+        this.columns = columns;
+        this.types = types;
+        this.rows = rows;
+    }
+
+
+    /**
+     * 读取 CSV 表
+     *
+     * @param file     文件
+     * @param encoding 文件编码, 策划 Excel 导出一般为 GBK
+     * @return TableReader
+     * @throws IOException 文件读取失败或者表头不完整
+     */
+    public static TableReader read(Path file, Charset encoding) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, encoding)) {
+            return read(file.getFileName().toString(), reader);
+        }
+    }
+
+
+    /**
+     * 读取 CSV 表, 用于打包在 jar 内的配置表
+     *
+     * @param name     文件名
+     * @param input    文件内容
+     * @param encoding 文件编码, 策划 Excel 导出一般为 GBK
+     * @return TableReader
+     * @throws IOException 文件读取失败或者表头不完整
+     */
+    public static TableReader read(String name, InputStream input, Charset encoding) throws IOException {
+        return read(name, new BufferedReader(new InputStreamReader(input, encoding)));
+    }
+
+
+    /**
+     * 读取 CSV 表
+     *
+     * @param name   文件名
+     * @param reader 读取器
+     * @return TableReader
+     * @throws IOException 文件读取失败或者表头不完整
+     */
+    static TableReader read(String name, BufferedReader reader) throws IOException {
+        List<String[]> lines = new ArrayList<>();
+        String[] line;
+        while ((line = next(reader)) != null) {
+            if (line.length > 1 || !line[0].isBlank()) {
+                lines.add(line);
+            }
+        }
+
+        if (lines.size() < HEADER_ROWS) {
+            throw new IOException("table header missing: " + name);
+        }
+
+        String[] keys = lines.get(1);
+        Map<String, Integer> columns = new HashMap<>(keys.length * 2);
+        for (int i = 0; i < keys.length; i++) {
+            columns.put(keys[i].trim(), i);
+        }
+        return new TableReader(name, columns, lines.get(2), lines.subList(HEADER_ROWS, lines.size()));
+    }
+
+
+    /**
+     * 读取一条 CSV 记录, 支持引号包裹的逗号, 换行和双引号转义
+     *
+     * @param reader 读取器
+     * @return 字段列表, 文件结束返回 null
+     * @throws IOException Error
+     */
+    static String[] next(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        field.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else {
+                    field.append(c);
+                }
+            }
+
+            // 引号内的换行属于字段内容
+            if (!quoted || (line = reader.readLine()) == null) {
+                break;
+            }
+            field.append('\n');
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+
+    /**
+     * 表名称
+     *
+     * @return String
+     */
+    public String name() {
+        return name;
+    }
+
+
+    /**
+     * 配置行数量
+     *
+     * @return int
+     */
+    public int size() {
+        return rows.size();
+    }
+
+
+    /**
+     * 获取字段列下标
+     *
+     * @param key 字段名
+     * @return int
+     * @throws IOException 字段不存在
+     */
+    public int column(String key) throws IOException {
+        Integer column = columns.get(key);
+        if (column == null) {
+            throw new IOException("table column missing: " + name + "." + key);
+        }
+        return column;
+    }
+
+
+    /**
+     * 获取字符串字段
+     *
+     * @param row    行
+     * @param column 列
+     * @return String
+     */
+    public String getString(int row, int column) {
+        String[] line = rows.get(row);
+        return column < line.length ? line[column].trim() : "";
+    }
+
+
+    /**
+     * 获取整数字段
+     *
+     * @param row    行
+     * @param column 列
+     * @return int
+     * @throws IOException 数据格式错误
+     */
+    public int getInt(int row, int column) throws IOException {
+        String value = getString(row, column);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException exception) {
+            throw new IOException("table value error: " + name + "[" + (row + HEADER_ROWS + 1) + "," + column + "] = " + value);
+        }
+    }
+
+
+    /**
+     * 获取整数数组字段, 格式为 [1,2,3]
+     *
+     * @param row    行
+     * @param column 列
+     * @return int[]
+     * @throws IOException 数据格式错误
+     */
+    public int[] getIntArray(int row, int column) throws IOException {
+        String value = getString(row, column);
+        String body = value.startsWith("[") && value.endsWith("]") ? value.substring(1, value.length() - 1).trim() : value;
+        if (body.isEmpty()) {
+            return new int[0];
+        }
+
+        String[] items = body.split(",");
+        int[] result = new int[items.length];
+        try {
+            for (int i = 0; i < items.length; i++) {
+                result[i] = Integer.parseInt(items[i].trim());
+            }
+        } catch (NumberFormatException exception) {
+            throw new IOException("table value error: " + name + "[" + (row + HEADER_ROWS + 1) + "," + column + "] = " + value);
+        }
+        return result;
+    }
+}
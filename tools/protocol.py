@@ -49,6 +49,123 @@ def out_java_proto(output, data, name="Protocols", file="Protocols.java"):
     f.write_text(data=text, encoding="utf-8")
 
 
+# 请求参数类型: 协议类型 -> (Java必填类型, Java可选类型, 解码方法)
+JAVA_ARGS_TYPES = {
+    "int": ("int", "Integer", "readInt"),
+    "long": ("long", "Long", "readLong"),
+    "double": ("double", "Double", "readDouble"),
+    "bool": ("boolean", "Boolean", "readBoolean"),
+    "string": ("String", "String", "readString"),
+}
+
+
+# 下划线命名转驼峰
+def camel_case(s, upper=False):
+    words = [w for w in s.lower().split("_") if len(w) > 0]
+    text = "".join(w.capitalize() for w in words)
+    return text if upper else text[:1].lower() + text[1:]
+
+
+# 构建Java请求参数对象, 只生成声明了 args 的协议
+def out_java_request(output, data, package="com.meteorcat.mix.constant.request"):
+    folder = pathlib.Path(output).joinpath("request")
+    folder.mkdir(parents=True, exist_ok=True)
+    for v in data:
+        args = v.get("args")
+        if not args:
+            continue
+
+        name = camel_case(v["name"], True) + "Request"
+        fields = []
+        for key in args:
+            spec = args[key]
+            kind = spec.get("type", "string")
+            if kind not in JAVA_ARGS_TYPES:
+                print("未知参数类型: ", v["name"], key, kind)
+                sys.exit(1)
+            required = bool(spec.get("required", False))
+            java_type, boxed_type, reader = JAVA_ARGS_TYPES[kind]
+            fields.append({
+                "key": key,
+                "name": camel_case(key),
+                "type": java_type if required else boxed_type,
+                "primitive": required and java_type != "String",
+                "required": required,
+                "reader": reader,
+                "desc": spec.get("description", key)
+            })
+
+        width = max(len(f["name"]) for f in fields)
+        text = "package %s;\n\n" % package
+        text += "import com.fasterxml.jackson.core.JsonParser;\n"
+        text += "import com.fasterxml.jackson.core.JsonToken;\n"
+        text += "import com.meteorcat.mix.core.codec.MessageDecoder;\n\n"
+        text += "import java.io.IOException;\n\n"
+        text += "/**\n"
+        text += " * %s\n" % v["desc"]
+        text += " * 协议: %s = %d, 由 tools/protocol.py 生成\n" % (v["name"], v["value"])
+        text += " *\n"
+        for f in fields:
+            text += " * @param %s %s\n" % (f["name"].ljust(width), f["desc"])
+        text += " */\n"
+        text += "public record %s(%s) {\n\n" % (name, ", ".join("%s %s" % (f["type"], f["name"]) for f in fields))
+        text += "    /**\n"
+        text += "     * 请求参数解码器\n"
+        text += "     */\n"
+        text += "    public static final MessageDecoder<%s> DECODER = %s::decode;\n\n\n" % (name, name)
+        text += "    /**\n"
+        text += "     * 从数据流直接解码请求参数\n"
+        text += "     *\n"
+        text += "     * @param parser 参数数据流, null 代表请求没有参数\n"
+        text += "     * @return %s\n" % name
+        text += "     * @throws IOException 参数缺失或者类型不匹配\n"
+        text += "     */\n"
+        text += "    public static %s decode(JsonParser parser) throws IOException {\n" % name
+        for f in fields:
+            if f["primitive"]:
+                default = {"int": "0", "long": "0L", "double": "0D", "boolean": "false"}[f["type"]]
+                text += "        %s %s = %s;\n" % (f["type"], f["name"], default)
+                text += "        boolean %sPresent = false;\n" % f["name"]
+            else:
+                text += "        %s %s = null;\n" % (f["type"], f["name"])
+        text += "        if (parser != null) {\n"
+        text += "            MessageDecoder.object(parser);\n"
+        text += "            String field;\n"
+        text += "            while ((field = parser.nextFieldName()) != null) {\n"
+        text += "                JsonToken token = parser.nextToken();\n"
+        text += "                switch (field) {\n"
+        for f in fields:
+            read = "MessageDecoder.%s(parser, token, \"%s\")" % (f["reader"], f["key"])
+            text += "                    case \"%s\" -> {\n" % f["key"]
+            if f["primitive"]:
+                text += "                        %s = %s;\n" % (f["name"], read)
+                text += "                        %sPresent = true;\n" % f["name"]
+            elif f["required"]:
+                text += "                        %s = %s;\n" % (f["name"], read)
+            else:
+                text += "                        %s = token == JsonToken.VALUE_NULL ? null : %s;\n" % (f["name"], read)
+            text += "                    }\n"
+        text += "                    default -> parser.skipChildren();\n"
+        text += "                }\n"
+        text += "            }\n"
+        text += "        }\n"
+        for f in fields:
+            if f["primitive"]:
+                text += "        if (!%sPresent) {\n" % f["name"]
+            elif f["required"]:
+                text += "        if (%s == null) {\n" % f["name"]
+            else:
+                continue
+            text += "            throw MessageDecoder.error(parser, \"missing field: %s\");\n" % f["key"]
+            text += "        }\n"
+        text += "        return new %s(%s);\n" % (name, ", ".join(f["name"] for f in fields))
+        text += "    }\n"
+        text += "}\n"
+
+        f = folder.joinpath("%s.java" % name)
+        f.write_text(data=text, encoding="utf-8")
+
+
 # 构建Godot
 def out_godot_proto(output, data, name="Protocols", file="Protocols.gd"):
     f = pathlib.Path(output)
@@ -139,12 +256,14 @@ def main(argv):
             for value in data:
                 name = data[value]["name"]
                 desc = data[value]["description"]
+                args = data[value].get("args")
                 proto = "%s_%s" % (prop, name)
                 print("解析协议: ", value, "-", proto, "|", desc)
                 proto_list.append({
                     "value": int(value),
                     "name": proto,
-                    "desc": desc
+                    "desc": desc,
+                    "args": args
                 })
 
     # 构建协议
@@ -152,6 +271,7 @@ def main(argv):
     out_lua_proto(output_dir, proto_list)
     out_csharp_proto(output_dir, proto_list)
     out_java_proto(output_dir, proto_list)
+    out_java_request(output_dir, proto_list)
 
 
 # 入口调用